@@ -0,0 +1,25 @@
+package musicsearch.models;
+
+import java.util.List;
+
+import lombok.Getter;
+
+@Getter
+public class BulkDownloadReport {
+    private final int requested;
+    private final int skipped;
+    private final int completed;
+    private final List<String> failed;
+    private final long bytes;
+    private final long elapsedMillis;
+
+    public BulkDownloadReport(int requested, int skipped, int completed, List<String> failed,
+                              long bytes, long elapsedMillis) {
+        this.requested = requested;
+        this.skipped = skipped;
+        this.completed = completed;
+        this.failed = failed;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+}
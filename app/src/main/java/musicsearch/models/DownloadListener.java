@@ -0,0 +1,7 @@
+package musicsearch.models;
+
+import musicsearch.service.DownloadJob;
+
+public interface DownloadListener {
+    void onDownloadChanged(DownloadJob job);
+}
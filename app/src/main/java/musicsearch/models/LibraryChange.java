@@ -0,0 +1,20 @@
+package musicsearch.models;
+
+import java.util.List;
+
+import lombok.Getter;
+
+@Getter
+public class LibraryChange {
+    private final List<MediaModel> updated;
+    private final List<String> removedUrls;
+
+    public LibraryChange(List<MediaModel> updated, List<String> removedUrls) {
+        this.updated = updated;
+        this.removedUrls = removedUrls;
+    }
+
+    public boolean isEmpty() {
+        return updated.isEmpty() && removedUrls.isEmpty();
+    }
+}
@@ -0,0 +1,5 @@
+package musicsearch.models;
+
+public interface LibraryChangeListener {
+    void onLibraryChanged(LibraryChange change);
+}
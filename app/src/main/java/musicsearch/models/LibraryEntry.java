@@ -0,0 +1,40 @@
+package musicsearch.models;
+
+import java.io.File;
+
+import lombok.Getter;
+
+@Getter
+public class LibraryEntry {
+    private String path;
+    private long size;
+    private long lastModified;
+    private String artist;
+    private String title;
+    private String duration;
+    private String coverUri;
+
+    public LibraryEntry(String path, long size, long lastModified,
+                        String artist, String title, String duration, String coverUri) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.artist = artist;
+        this.title = title;
+        this.duration = duration;
+        this.coverUri = coverUri;
+    }
+
+    /**
+     * Файл не изменился с момента индексации (совпадают размер и mtime).
+     */
+    public boolean matches(File file) {
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    public MediaModel toMediaModel() {
+        return new MediaModel(artist + " - " + title, duration,
+                new File(path).toURI().toString(),
+                coverUri != null ? coverUri : "", true);
+    }
+}
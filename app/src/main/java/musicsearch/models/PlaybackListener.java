@@ -5,4 +5,5 @@ import java.util.List;
 public interface PlaybackListener {
     void onTrackSelected(MediaModel mediaModel);
     void onPlayPlaylist(List<MediaModel> playlist, int startIndex);
+    void onPlayNext(MediaModel mediaModel);
 }
@@ -0,0 +1,31 @@
+package musicsearch.models;
+
+import lombok.Getter;
+
+@Getter
+public class RequestStats {
+    private final long requests;
+    private final long queued;
+    private final long retried;
+    private final long shed;
+    private final long throttled;
+    private final int concurrencyLimit;
+    private final int inFlight;
+
+    public RequestStats(long requests, long queued, long retried, long shed, long throttled,
+                        int concurrencyLimit, int inFlight) {
+        this.requests = requests;
+        this.queued = queued;
+        this.retried = retried;
+        this.shed = shed;
+        this.throttled = throttled;
+        this.concurrencyLimit = concurrencyLimit;
+        this.inFlight = inFlight;
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + requests + ", queued=" + queued + ", retried=" + retried + ", shed=" + shed
+                + ", throttled=" + throttled + ", limit=" + concurrencyLimit + ", inFlight=" + inFlight;
+    }
+}
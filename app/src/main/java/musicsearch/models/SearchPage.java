@@ -0,0 +1,16 @@
+package musicsearch.models;
+
+import java.util.List;
+
+import lombok.Getter;
+
+@Getter
+public class SearchPage {
+    private final List<MediaModel> tracks;
+    private final int pageCount;
+
+    public SearchPage(List<MediaModel> tracks, int pageCount) {
+        this.tracks = tracks;
+        this.pageCount = pageCount;
+    }
+}
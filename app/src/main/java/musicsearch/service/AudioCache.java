@@ -0,0 +1,320 @@
+package musicsearch.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Дисковый кеш прослушанных треков по URL с LRU-вытеснением по суммарному размеру (AUDIO_CACHE_MB).
+ * Пока трек играет из сети, он в фоне докачивается в кеш; повторное воспроизведение и "Download"
+ * берут файл из кеша без обращения к сети. Трек, который отдаёт плееру StreamProxy, второй раз не качается:
+ * прокси сам пишет в кеш то, что получил от сервера.
+ */
+public class AudioCache {
+    private static final Path DIR = Paths.get(System.getProperty("user.home"), ".musicsearch", "audio-cache");
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final AudioCache instance = new AudioCache(DIR, Config.getLong("AUDIO_CACHE_MB", 512) * 1024 * 1024);
+
+    private final Path dir;
+    private final long maxBytes;
+    // порядок доступа: первым идёт давно не использованный файл
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> filling = new HashSet<>();
+    private long totalBytes = 0;
+    // одна фоновая докачка за раз, чтобы не отнимать канал у воспроизведения
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("audio-cache");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AudioCache(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        load();
+    }
+
+    public static AudioCache getInstance() {
+        return instance;
+    }
+
+    public static boolean isCacheable(String url) {
+        return url != null && (url.startsWith("http://") || url.startsWith("https://"));
+    }
+
+    /**
+     * Файл из кеша для URL, или null. Обращение продвигает запись в LRU.
+     */
+    public synchronized Path lookup(String url) {
+        if (!isCacheable(url)) return null;
+        String key = key(url);
+        if (entries.get(key) == null) return null;
+        Path file = dir.resolve(key);
+        if (!Files.isRegularFile(file)) {
+            totalBytes -= entries.remove(key);
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {}
+        return file;
+    }
+
+    public synchronized boolean contains(String url) {
+        return isCacheable(url) && entries.containsKey(key(url));
+    }
+
+    /**
+     * URL для воспроизведения: локальный файл, если трек уже в кеше; локальный поток от AudioPrefetcher, если
+     * начало трека уже подгружено (в кеш его запишет прокси); иначе исходный URL, а трек ставится на фоновую
+     * докачку в кеш.
+     */
+    public String resolveForPlayback(String url) {
+        Path cached = lookup(url);
+        if (cached != null) return cached.toUri().toString();
+        String prefetched = AudioPrefetcher.getInstance().streamUrl(url);
+        if (prefetched != null) return prefetched;
+        fillAsync(url);
+        return url;
+    }
+
+    public void fillAsync(String url) {
+        if (!isCacheable(url) || maxBytes <= 0) return;
+        String key = key(url);
+        synchronized (this) {
+            if (entries.containsKey(key) || !filling.add(key)) return;
+        }
+        executor.submit(() -> {
+            try {
+                fill(url, key);
+            } catch (Exception e) {
+                System.err.println("Audio cache fill failed for " + url + ": " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    filling.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Кладёт в target копию кешированного файла: жёсткую ссылку, если ФС позволяет, иначе копию.
+     *
+     * @return false, если трека нет в кеше
+     */
+    public boolean copyTo(String url, Path target) throws IOException {
+        Path cached = lookup(url);
+        if (cached == null) return false;
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, cached);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(cached, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    /**
+     * Запись в кеш трека, который уже качается ради воспроизведения, — вместо второй загрузки того же файла.
+     * null, если трек уже в кеше, уже докачивается или не помещается в бюджет.
+     */
+    Fill beginFill(String url, long length) {
+        if (!isCacheable(url) || length < 0 || length > maxBytes) return null;
+        String key = key(url);
+        synchronized (this) {
+            if (entries.containsKey(key) || !filling.add(key)) return null;
+        }
+        try {
+            return new Fill(key, length);
+        } catch (IOException e) {
+            System.err.println("Audio cache fill failed for " + url + ": " + e.getMessage());
+            synchronized (this) {
+                filling.remove(key);
+            }
+            return null;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void fill(String url, String key) throws IOException {
+        try (HttpService.StreamResponse response = HttpService.openOk(url, TIMEOUT, Map.of("Accept-Encoding", "identity"));
+             InputStream in = response.body()) {
+            long expected = response.contentLength();
+            // длина проверяется до создания временного файла, чтобы не оставлять пустой .tmp
+            if (expected > maxBytes) return;
+            Fill fill = new Fill(key, expected);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) fill.write(buffer, 0, read);
+            } catch (IOException | RuntimeException e) {
+                fill.abort();
+                throw e;
+            }
+            fill.complete();
+        }
+    }
+
+    /**
+     * Файл кеша в процессе записи во временный .tmp. Ошибки записи не выбрасываются — запись просто
+     * отменяется, чтобы сбой кеша не прерывал воспроизведение, которое его кормит.
+     */
+    class Fill {
+        private final String key;
+        private final long expected;
+        private final Path tmp;
+        private final OutputStream out;
+        private long written = 0;
+        private boolean done = false;
+
+        private Fill(String key, long expected) throws IOException {
+            this.key = key;
+            this.expected = expected;
+            Files.createDirectories(dir);
+            this.tmp = dir.resolve(key + ".tmp");
+            this.out = Files.newOutputStream(tmp);
+        }
+
+        void write(byte[] buffer, int offset, int length) {
+            if (done) return;
+            try {
+                out.write(buffer, offset, length);
+                written += length;
+            } catch (IOException e) {
+                System.err.println("Audio cache write failed for " + key + ": " + e.getMessage());
+                abort();
+            }
+        }
+
+        /**
+         * Переносит файл в кеш, если получено ровно expected байт; иначе файл удаляется.
+         */
+        void complete() throws IOException {
+            if (done) throw new IOException("Cache write was aborted");
+            if (expected >= 0 && written != expected) {
+                abort();
+                throw new IOException("Incomplete: " + written + " of " + expected + " bytes");
+            }
+            done = true;
+            try {
+                out.close();
+                try {
+                    Files.move(tmp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                release();
+                throw e;
+            }
+            synchronized (AudioCache.this) {
+                Long previous = entries.put(key, written);
+                totalBytes += written - (previous == null ? 0 : previous);
+                filling.remove(key);
+                evict();
+            }
+        }
+
+        /**
+         * Отменяет запись; после complete() ничего не делает.
+         */
+        void abort() {
+            if (done) return;
+            done = true;
+            try {
+                out.close();
+            } catch (IOException ignored) {}
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + tmp + ": " + e.getMessage());
+            }
+            release();
+        }
+
+        private void release() {
+            synchronized (AudioCache.this) {
+                filling.remove(key);
+            }
+        }
+    }
+
+    // вытесняем самые давно использованные файлы, пока не уложимся в бюджет
+    private void evict() {
+        var it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            try {
+                Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("Could not evict cached audio " + eldest.getKey() + ": " + e.getMessage());
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    // порядок LRU восстанавливается по времени изменения (оно обновляется при каждом обращении)
+    private synchronized void load() {
+        if (!Files.isDirectory(dir)) return;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+            files.sort(Comparator.comparingLong(f -> f.toFile().lastModified()));
+            for (Path file : files) {
+                long size = Files.size(file);
+                entries.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            evict();
+        } catch (IOException e) {
+            System.err.println("Error reading audio cache: " + e.getMessage());
+        }
+    }
+
+    private static String key(String url) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] dig = md.digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(dig.length * 2 + 6);
+            for (byte b : dig) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.append(".audio").toString();
+        } catch (Exception e) {
+            return Integer.toHexString(url.hashCode()) + ".audio";
+        }
+    }
+}
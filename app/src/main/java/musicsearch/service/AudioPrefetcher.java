@@ -0,0 +1,206 @@
+package musicsearch.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Спекулятивная подгрузка начала трека (PREFETCH_KB) — для трека под курсором и первого результата поиска.
+ * Начала хранятся в памяти в пределах общего бюджета PREFETCH_BUDGET_KB (вместе с загрузками в процессе),
+ * старые вытесняются. При воспроизведении плеер получает начало сразу из памяти через {@link StreamProxy},
+ * а остаток файла тем временем запрашивается у сервера.
+ */
+public class AudioPrefetcher {
+    private static final int HEAD_BYTES = Config.getInt("PREFETCH_KB", 384) * 1024;
+    private static final long BUDGET = Config.getLong("PREFETCH_BUDGET_KB", 8 * 1024) * 1024;
+    private static final long HOVER_DELAY_MS = Config.getLong("PREFETCH_HOVER_DELAY_MS", 300);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final AudioPrefetcher instance = new AudioPrefetcher();
+
+    static class Head {
+        final byte[] data;
+        final long total;
+        final String contentType;
+        final String etag;
+
+        Head(byte[] data, long total, String contentType, String etag) {
+            this.data = data;
+            this.total = total;
+            this.contentType = contentType;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Запланированная подгрузка; cancel() снимает её с очереди или обрывает уже идущую.
+     */
+    public static class Handle {
+        private volatile boolean cancelled = false;
+        private volatile Future<?> future;
+        private volatile Closeable response;
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) f.cancel(false);
+            Closeable r = response;
+            if (r != null) {
+                try {
+                    r.close();
+                } catch (IOException ignored) {}
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    // порядок доступа: первым идёт давно не использованное начало
+    private final Map<String, Head> heads = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> inFlight = new HashSet<>();
+    // байты сохранённых начал плюс зарезервированные под загрузки в процессе
+    private long usedBytes = 0;
+    // один поток с низким приоритетом: подгрузка не должна мешать поиску и воспроизведению
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("audio-prefetch");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private StreamProxy proxy;
+
+    public static AudioPrefetcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Подгрузка трека под курсором: начинается после PREFETCH_HOVER_DELAY_MS, если курсор ещё на месте.
+     */
+    public Handle prefetchOnHover(String url) {
+        return schedule(url, HOVER_DELAY_MS);
+    }
+
+    public Handle prefetch(String url) {
+        return schedule(url, 0);
+    }
+
+    /**
+     * URL, по которому плеер получит трек с уже подгруженным началом, или null, если начала нет.
+     */
+    public String streamUrl(String url) {
+        Head head;
+        synchronized (this) {
+            head = heads.get(url);
+        }
+        if (head == null) return null;
+        try {
+            return proxy().register(url, head);
+        } catch (IOException e) {
+            System.err.println("Prefetch proxy unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    synchronized Head head(String url) {
+        return heads.get(url);
+    }
+
+    // сервер отдал другой файл — сохранённое начало больше не подходит
+    synchronized void invalidate(String url) {
+        Head head = heads.remove(url);
+        if (head != null) usedBytes -= head.data.length;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        synchronized (this) {
+            if (proxy != null) proxy.stop();
+        }
+    }
+
+    private synchronized StreamProxy proxy() throws IOException {
+        if (proxy == null) proxy = StreamProxy.start(this);
+        return proxy;
+    }
+
+    private Handle schedule(String url, long delayMs) {
+        Handle handle = new Handle();
+        if (!AudioCache.isCacheable(url) || HEAD_BYTES <= 0 || BUDGET < HEAD_BYTES) return handle;
+        synchronized (this) {
+            if (heads.containsKey(url)) return handle;
+        }
+        try {
+            handle.future = executor.schedule(() -> fetch(url, handle), delayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // исполнитель уже остановлен при выходе
+        }
+        return handle;
+    }
+
+    private void fetch(String url, Handle handle) {
+        if (handle.isCancelled() || AudioCache.getInstance().contains(url)) return;
+        synchronized (this) {
+            if (heads.containsKey(url) || inFlight.contains(url) || !reserve(HEAD_BYTES)) return;
+            inFlight.add(url);
+        }
+        Head head = null;
+        try {
+            head = download(url, handle);
+        } catch (IOException e) {
+            if (!handle.isCancelled()) System.err.println("Prefetch failed for " + url + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                inFlight.remove(url);
+                usedBytes -= HEAD_BYTES;
+                if (head != null && reserve(head.data.length)) heads.put(url, head);
+            }
+        }
+    }
+
+    private Head download(String url, Handle handle) throws IOException {
+        Map<String, String> headers = Map.of("Range", "bytes=0-" + (HEAD_BYTES - 1), "Accept-Encoding", "identity");
+        try (HttpService.StreamResponse response = HttpService.openOk(url, TIMEOUT, headers);
+             InputStream in = response.body()) {
+            handle.response = response;
+            if (handle.isCancelled()) return null;
+            long total = response.statusCode() == 206
+                    ? DownloadManager.parseContentRange(response.header("Content-Range"))[1]
+                    : response.contentLength();
+            // без длины файла плеер нельзя отдать склеенный поток
+            if (total <= 0) return null;
+
+            byte[] data = new byte[(int) Math.min(HEAD_BYTES, total)];
+            int filled = 0;
+            while (filled < data.length) {
+                if (handle.isCancelled()) return null;
+                int read = in.read(data, filled, data.length - filled);
+                if (read == -1) return null;
+                filled += read;
+            }
+            return new Head(data, total, response.header("Content-Type"), response.header("ETag"));
+        }
+    }
+
+    // освобождает место, вытесняя старые начала; false — бюджет занят загрузками в процессе
+    private boolean reserve(long bytes) {
+        var it = heads.values().iterator();
+        while (usedBytes + bytes > BUDGET && it.hasNext()) {
+            usedBytes -= it.next().data.length;
+            it.remove();
+        }
+        if (usedBytes + bytes > BUDGET) return false;
+        usedBytes += bytes;
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package musicsearch.service;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import musicsearch.models.BulkDownloadReport;
+import musicsearch.models.DownloadListener;
+import musicsearch.models.MediaModel;
+
+/**
+ * Пакетная загрузка набора треков в папку. Треки, которые уже есть в библиотеке или в папке,
+ * пропускаются. В очередь DownloadManager одновременно попадает не больше window заданий
+ * (с пониженным приоритетом), так что ручные загрузки не ждут конца пакета.
+ */
+public class BulkDownload implements DownloadListener {
+    private static final int WINDOW = Config.getInt("BULK_DOWNLOAD_WINDOW", 4);
+
+    private final DownloadManager manager;
+    private final LibraryIndex libraryIndex;
+    private final File targetDir;
+    private final int window;
+    private final CompletableFuture<BulkDownloadReport> result = new CompletableFuture<>();
+
+    private final Deque<MediaModel> pending = new ArrayDeque<>();
+    private final Set<DownloadJob> outstanding = new HashSet<>();
+    private final List<String> failed = new ArrayList<>();
+    private int requested;
+    private int skipped;
+    private int completed;
+    private long bytes;
+    private long startedAt;
+
+    public BulkDownload(DownloadManager manager, LibraryIndex libraryIndex, File targetDir) {
+        this(manager, libraryIndex, targetDir, WINDOW);
+    }
+
+    public BulkDownload(DownloadManager manager, LibraryIndex libraryIndex, File targetDir, int window) {
+        this.manager = manager;
+        this.libraryIndex = libraryIndex;
+        this.targetDir = targetDir;
+        this.window = Math.max(window, 1);
+    }
+
+    /**
+     * Запускает пакет; future завершается отчётом, когда все задания закончились (успешно или нет).
+     */
+    public CompletableFuture<BulkDownloadReport> start(List<MediaModel> tracks) {
+        synchronized (this) {
+            startedAt = System.currentTimeMillis();
+            requested = tracks.size();
+            for (MediaModel track : tracks) {
+                if (libraryIndex.isDownloaded(track)) {
+                    skipped++;
+                } else {
+                    pending.add(track);
+                }
+            }
+        }
+        targetDir.mkdirs();
+        manager.addListener(this);
+        pump();
+        return result;
+    }
+
+    @Override
+    public void onDownloadChanged(DownloadJob job) {
+        if (!job.isFinished()) return;
+        synchronized (this) {
+            if (!outstanding.remove(job)) return;
+            switch (job.getState()) {
+                case DONE -> {
+                    completed++;
+                    bytes += job.getTransferred();
+                }
+                case CANCELLED -> failed.add(job.getMedia().getTitle() + " (отменено)");
+                default -> failed.add(job.getMedia().getTitle() + ": " + job.getError());
+            }
+        }
+        pump();
+    }
+
+    private void pump() {
+        BulkDownloadReport report = null;
+        synchronized (this) {
+            while (outstanding.size() < window && !pending.isEmpty()) {
+                MediaModel track = pending.poll();
+                File file = new File(targetDir, FileEngine.cleanFileName(track.getTitle()) + ".mp3");
+                if (file.exists()) {
+                    skipped++;
+                    continue;
+                }
+                outstanding.add(manager.enqueue(track, file, DownloadJob.PRIORITY_BULK));
+            }
+            if (outstanding.isEmpty() && pending.isEmpty() && !result.isDone()) {
+                report = new BulkDownloadReport(requested, skipped, completed, new ArrayList<>(failed), bytes,
+                        System.currentTimeMillis() - startedAt);
+            }
+        }
+        if (report != null) {
+            manager.removeListener(this);
+            result.complete(report);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package musicsearch.service;
+
+/**
+ * Флаг отмены для фоновой работы: владелец вызывает cancel(), исполнитель периодически проверяет isCancelled().
+ */
+public class CancellationToken {
+    private volatile boolean cancelled = false;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
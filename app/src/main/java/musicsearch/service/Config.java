@@ -0,0 +1,37 @@
+package musicsearch.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Настройки из .env (или переменных окружения) с значениями по умолчанию.
+ */
+public class Config {
+    private static final Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+
+    public static String get(String key, String defaultValue) {
+        String value = dotenv.get(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,133 @@
+package musicsearch.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import musicsearch.models.MediaModel;
+
+/**
+ * Одна загрузка в очереди DownloadManager. Состояние меняет только менеджер;
+ * поля volatile, чтобы панель загрузок могла читать прогресс без блокировок.
+ */
+public class DownloadJob {
+    public enum State { QUEUED, RUNNING, PAUSED, DONE, FAILED, CANCELLED }
+
+    public static final int PRIORITY_BULK = -10;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_HIGH = 10;
+
+    private final long id;
+    private final MediaModel media;
+    private final File target;
+    private final int priority;
+
+    private volatile State state = State.QUEUED;
+    private volatile long transferred = 0;
+    private volatile long total = -1;
+    private volatile String error;
+    private volatile boolean pauseRequested = false;
+    private volatile boolean cancelRequested = false;
+    private volatile Closeable activeResponse;
+
+    DownloadJob(long id, MediaModel media, File target, int priority) {
+        this.id = id;
+        this.media = media;
+        this.target = target;
+        this.priority = priority;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public MediaModel getMedia() {
+        return media;
+    }
+
+    public File getTarget() {
+        return target;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getTransferred() {
+        return transferred;
+    }
+
+    /**
+     * Размер файла по Content-Length, или -1 если неизвестен.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Доля скачанного от 0 до 1, или -1 если размер неизвестен.
+     */
+    public double getProgress() {
+        long size = total;
+        return size > 0 ? Math.min(1.0, (double) transferred / size) : -1;
+    }
+
+    public boolean isFinished() {
+        State s = state;
+        return s == State.DONE || s == State.FAILED || s == State.CANCELLED;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setTransferred(long transferred) {
+        this.transferred = transferred;
+    }
+
+    void setTotal(long total) {
+        this.total = total;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    boolean isPauseRequested() {
+        return pauseRequested;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void setPauseRequested(boolean pauseRequested) {
+        this.pauseRequested = pauseRequested;
+    }
+
+    void setActiveResponse(Closeable response) {
+        this.activeResponse = response;
+    }
+
+    // закрытие потока прерывает блокирующее чтение, не дожидаясь следующего блока данных
+    void requestCancel() {
+        cancelRequested = true;
+        interruptTransfer();
+    }
+
+    void interruptTransfer() {
+        Closeable response = activeResponse;
+        if (response == null) return;
+        try {
+            response.close();
+        } catch (IOException ignored) {}
+    }
+}
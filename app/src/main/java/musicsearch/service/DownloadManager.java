@@ -0,0 +1,344 @@
+package musicsearch.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import musicsearch.models.DownloadListener;
+import musicsearch.models.MediaModel;
+
+/**
+ * Очередь загрузок: одновременно качается не больше DOWNLOAD_CONCURRENCY файлов,
+ * остальные ждут в очереди по приоритету, при равном приоритете — в порядке добавления.
+ * Без привязки к UI; панель загрузок лишь читает состояние заданий.
+ */
+public class DownloadManager {
+    private static final int CONCURRENCY = Config.getInt("DOWNLOAD_CONCURRENCY", 3);
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+    private static final DownloadManager instance = new DownloadManager(CONCURRENCY);
+
+    private final int concurrency;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r);
+        t.setName("download-" + t.getId());
+        t.setDaemon(true);
+        return t;
+    });
+    private final PriorityQueue<DownloadJob> queue = new PriorityQueue<>(
+            Comparator.comparingInt(DownloadJob::getPriority).reversed().thenComparingLong(DownloadJob::getId));
+    private final List<DownloadJob> jobs = new CopyOnWriteArrayList<>();
+    private final List<DownloadListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong bytesTotal = new AtomicLong();
+    private int running = 0;
+
+    // скорость считается по выборкам при опросе, со сглаживанием
+    private long sampleTime = System.nanoTime();
+    private long sampleBytes = 0;
+    private double throughput = 0;
+
+    public DownloadManager(int concurrency) {
+        this.concurrency = Math.max(concurrency, 1);
+    }
+
+    public static DownloadManager getInstance() {
+        return instance;
+    }
+
+    public DownloadJob enqueue(MediaModel media, File target) {
+        return enqueue(media, target, DownloadJob.PRIORITY_NORMAL);
+    }
+
+    public DownloadJob enqueue(MediaModel media, File target, int priority) {
+        DownloadJob job = new DownloadJob(nextId.incrementAndGet(), media, target, priority);
+        jobs.add(job);
+        synchronized (this) {
+            queue.add(job);
+        }
+        notifyChanged(job);
+        dispatch();
+        return job;
+    }
+
+    /**
+     * Приостанавливает загрузку. Активная передача прерывается, а после resume() продолжается
+     * с последнего записанного байта.
+     */
+    public void pause(DownloadJob job) {
+        synchronized (this) {
+            if (job.isFinished() || job.getState() == DownloadJob.State.PAUSED) return;
+            job.setPauseRequested(true);
+            if (queue.remove(job)) {
+                job.setState(DownloadJob.State.PAUSED);
+            } else {
+                job.interruptTransfer();
+                return;
+            }
+        }
+        notifyChanged(job);
+    }
+
+    public void resume(DownloadJob job) {
+        synchronized (this) {
+            if (job.getState() != DownloadJob.State.PAUSED) return;
+            job.setPauseRequested(false);
+            job.setState(DownloadJob.State.QUEUED);
+            queue.add(job);
+        }
+        notifyChanged(job);
+        dispatch();
+    }
+
+    /**
+     * Повторяет неудавшуюся загрузку; уже скачанная часть не перекачивается.
+     */
+    public void retry(DownloadJob job) {
+        synchronized (this) {
+            if (job.getState() != DownloadJob.State.FAILED) return;
+            job.setError(null);
+            job.setState(DownloadJob.State.QUEUED);
+            queue.add(job);
+        }
+        notifyChanged(job);
+        dispatch();
+    }
+
+    public void cancel(DownloadJob job) {
+        boolean wasIdle;
+        synchronized (this) {
+            DownloadJob.State state = job.getState();
+            if (state == DownloadJob.State.DONE || state == DownloadJob.State.CANCELLED) return;
+            job.requestCancel();
+            wasIdle = queue.remove(job) || state == DownloadJob.State.PAUSED || state == DownloadJob.State.FAILED;
+            if (wasIdle) job.setState(DownloadJob.State.CANCELLED);
+        }
+        if (wasIdle) {
+            new PartFile(job.getTarget()).discard();
+            notifyChanged(job);
+        }
+    }
+
+    /**
+     * Убирает из списка завершённые, отменённые и неудачные загрузки.
+     */
+    public void clearFinished() {
+        jobs.removeIf(DownloadJob::isFinished);
+    }
+
+    public List<DownloadJob> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Суммарная скорость всех загрузок, байт/с. Рассчитана на периодический опрос (панель загрузок).
+     */
+    public synchronized double getThroughput() {
+        long now = System.nanoTime();
+        double elapsed = (now - sampleTime) / 1e9;
+        if (elapsed >= 0.2) {
+            long bytes = bytesTotal.get();
+            double current = (bytes - sampleBytes) / elapsed;
+            throughput = throughput == 0 ? current : throughput * 0.7 + current * 0.3;
+            sampleTime = now;
+            sampleBytes = bytes;
+        }
+        return running == 0 ? 0 : throughput;
+    }
+
+    public void addListener(DownloadListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DownloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    // загрузки приостанавливаются, а не отменяются, чтобы .part можно было докачать позже
+    public void shutdown() {
+        for (DownloadJob job : jobs) {
+            if (job.getState() == DownloadJob.State.RUNNING) pause(job);
+        }
+        executor.shutdown();
+    }
+
+    private void dispatch() {
+        List<DownloadJob> started = new ArrayList<>();
+        synchronized (this) {
+            while (running < concurrency && !queue.isEmpty()) {
+                DownloadJob job = queue.poll();
+                job.setState(DownloadJob.State.RUNNING);
+                running++;
+                started.add(job);
+            }
+        }
+        for (DownloadJob job : started) {
+            notifyChanged(job);
+            executor.submit(() -> run(job));
+        }
+    }
+
+    private void run(DownloadJob job) {
+        try {
+            transfer(job);
+            job.setState(DownloadJob.State.DONE);
+        } catch (Exception e) {
+            // .part остаётся для докачки, кроме явной отмены
+            if (job.isCancelRequested()) {
+                new PartFile(job.getTarget()).discard();
+                job.setState(DownloadJob.State.CANCELLED);
+            } else if (job.isPauseRequested()) {
+                job.setState(DownloadJob.State.PAUSED);
+            } else {
+                System.err.println("Download failed: " + job.getMedia().getTitle() + " - " + e.getMessage());
+                job.setError(e.getMessage());
+                job.setState(DownloadJob.State.FAILED);
+            }
+        } finally {
+            job.setActiveResponse(null);
+            synchronized (this) {
+                running--;
+            }
+        }
+        notifyChanged(job);
+        dispatch();
+    }
+
+    // данные идут из сокета прямо в .part; буфер один на поток загрузки.
+    // Если от прошлой попытки остался .part с тем же URL, докачивается только недостающее.
+    private void transfer(DownloadJob job) throws IOException {
+        String url = job.getMedia().getUrl();
+        PartFile partFile = new PartFile(job.getTarget());
+        PartFile.Meta previous = partFile.resumable(url);
+        // трек уже прослушан и лежит в кеше — сеть не нужна
+        if (previous == null && AudioCache.getInstance().copyTo(url, partFile.getPart())) {
+            long size = partFile.existingBytes();
+            job.setTotal(size);
+            job.setTransferred(size);
+            partFile.commit(size);
+            return;
+        }
+        if (previous != null && previous.segments != null) {
+            new SegmentedDownload(job, partFile, url, previous.etag, previous.length, TIMEOUT, bytesTotal, executor)
+                    .resume(previous.segments);
+            partFile.commit(previous.length);
+            return;
+        }
+        long offset = previous != null ? partFile.existingBytes() : 0;
+        if (previous != null && previous.length > 0 && offset >= previous.length) {
+            job.setTotal(previous.length);
+            job.setTransferred(offset);
+            partFile.commit(previous.length);
+            return;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "identity");
+        if (offset > 0) {
+            headers.put("Range", "bytes=" + offset + "-");
+            // слабый ETag в If-Range не допускается; тогда полагаемся на сверку длины
+            if (previous.etag != null && !previous.etag.startsWith("W/")) headers.put("If-Range", previous.etag);
+        }
+
+        try (HttpService.StreamResponse response = HttpService.open(url, TIMEOUT, headers)) {
+            job.setActiveResponse(response);
+            int status = response.statusCode();
+            long total;
+            boolean append;
+            if (status == 206 && offset > 0) {
+                long[] range = parseContentRange(response.header("Content-Range"));
+                total = range[1] >= 0 ? range[1] : previous.length;
+                if (range[0] != offset || (previous.length >= 0 && total != previous.length)) {
+                    partFile.discard();
+                    throw new IOException("Server returned a different file, restart the download");
+                }
+                append = true;
+            } else if (response.isSuccessful()) {
+                // сервер не поддерживает Range или файл изменился (If-Range) — качаем заново
+                offset = 0;
+                total = response.contentLength();
+                append = false;
+            } else {
+                if (status == 416) partFile.discard();
+                throw new HttpService.HttpStatusException(status, url);
+            }
+
+            if (!append && SegmentedDownload.supports(response, total)) {
+                new SegmentedDownload(job, partFile, url, response.header("ETag"), total, TIMEOUT, bytesTotal, executor)
+                        .start(response);
+                partFile.commit(total);
+                return;
+            }
+
+            partFile.writeMeta(url, response.header("ETag"), total);
+            job.setTotal(total);
+            job.setTransferred(offset);
+
+            byte[] buffer = BUFFER.get();
+            long transferred = offset;
+            try (InputStream in = response.body();
+                 OutputStream out = new FileOutputStream(partFile.getPart().toFile(), append)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (job.isCancelRequested() || job.isPauseRequested()) throw new IOException("Interrupted");
+                    out.write(buffer, 0, read);
+                    transferred += read;
+                    job.setTransferred(transferred);
+                    bytesTotal.addAndGet(read);
+                }
+            }
+            if (job.isCancelRequested() || job.isPauseRequested()) throw new IOException("Interrupted");
+        }
+        partFile.commit(job.getTotal());
+    }
+
+    // "bytes 100-999/1000" -> {100, 1000}; неизвестные части -> -1
+    static long[] parseContentRange(String value) {
+        long[] result = {-1, -1};
+        if (value == null || !value.startsWith("bytes ")) return result;
+        try {
+            String spec = value.substring(6).trim();
+            int dash = spec.indexOf('-');
+            int slash = spec.indexOf('/');
+            // при ошибке разбора не отдаём половину значения: начало без длины прошло бы сверку диапазона
+            long start = dash > 0 ? Long.parseLong(spec.substring(0, dash).trim()) : -1;
+            long total = slash > 0 && !spec.endsWith("*") ? Long.parseLong(spec.substring(slash + 1).trim()) : -1;
+            result[0] = start;
+            result[1] = total;
+        } catch (NumberFormatException e) {
+            System.err.println("Malformed Content-Range: " + value);
+        }
+        return result;
+    }
+
+    private void notifyChanged(DownloadJob job) {
+        for (DownloadListener listener : listeners) {
+            try {
+                listener.onDownloadChanged(job);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
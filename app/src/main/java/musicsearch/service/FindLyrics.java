@@ -11,7 +11,6 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Comment;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -23,12 +22,15 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Надёжный поиск лирики и вывод в простое окно с TextArea.
  */
 public class FindLyrics {
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
 
     public void searchAndShowLyrics(Stage owner, String query) {
         String[] parts = query.split(" - ", 2);
@@ -109,13 +111,7 @@ public class FindLyrics {
 
     // Основной парсер: возвращает plain text с переносами (\n) либо null
     private String fetchLyricsPlainTextFromUrl(String url) throws IOException {
-        Document doc = Jsoup.connect(url)
-                .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64)")
-                .referrer("https://www.google.com")
-                .timeout(15_000)
-                .maxBodySize(0)
-                .followRedirects(true)
-                .get();
+        Document doc = HttpService.getDocument(url, TIMEOUT, Map.of("Referer", "https://www.google.com"));
 
         // Ищем комментарий с текстом "Usage of azlyrics.com content"
         for (Node node : doc.body().childNodes()) {
@@ -208,12 +204,7 @@ public class FindLyrics {
     }
 
     private String extractAzlyricsFromSearchPage(String searchUrl, boolean isGoogle) throws IOException {
-        Document doc = Jsoup.connect(searchUrl)
-                .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64)")
-                .referrer("https://www.google.com")
-                .timeout(15_000)
-                .maxBodySize(0)
-                .get();
+        Document doc = HttpService.getDocument(searchUrl, TIMEOUT, Map.of("Referer", "https://www.google.com"));
 
         for (Element a : doc.select("a[href]")) {
             String href = a.attr("href");
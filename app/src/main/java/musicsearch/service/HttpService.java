@@ -0,0 +1,366 @@
+package musicsearch.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Общий HTTP-клиент приложения: поиск, скачивание, обложки и лирика идут через один
+ * пул соединений (keep-alive, HTTP/2 где сервер поддерживает), поэтому повторные запросы
+ * к тому же хосту не платят за TCP/TLS-рукопожатие.
+ * Число одновременных запросов к одному хосту ограничено HTTP_MAX_PER_HOST.
+ * timeout запроса ограничивает и ожидание заголовков, и каждое чтение тела: зависшее чтение
+ * прерывается сторожем, иначе поток и разрешение на хост остались бы заняты навсегда.
+ */
+public class HttpService {
+    public static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64)";
+    private static final int MAX_PER_HOST = Config.getInt("HTTP_MAX_PER_HOST", 6);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(Config.getLong("HTTP_CONNECT_TIMEOUT_MS", 5000));
+    private static final long PERMIT_POLL_MS = 250;
+    private static final long WATCHDOG_PERIOD_MS = 1000;
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r);
+                t.setName("http-" + t.getId());
+                t.setDaemon(true);
+                return t;
+            }))
+            .build();
+    private static final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    // открытые ответы; сторож раз в секунду закрывает те, чьё чтение висит дольше timeout
+    private static final Set<StreamResponse> openResponses = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("http-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        watchdog.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            for (StreamResponse response : openResponses) response.abortIfStalled(now);
+        }, WATCHDOG_PERIOD_MS, WATCHDOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Открывает ответ как поток. Разрешение на соединение с хостом удерживается до close().
+     * Код ответа не проверяется — это делает вызывающий.
+     */
+    public static StreamResponse open(String url, Duration timeout, Map<String, String> headers) throws IOException {
+        return open(url, timeout, headers, () -> false);
+    }
+
+    /**
+     * То же, но ожидание свободного соединения с хостом прекращается, как только abandoned вернёт true
+     * (пауза или отмена загрузки), — иначе остановить поток, стоящий в очереди к хосту, нельзя.
+     */
+    public static StreamResponse open(String url, Duration timeout, Map<String, String> headers,
+                                      BooleanSupplier abandoned) throws IOException {
+        URI uri = toUri(url);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", "gzip, deflate");
+        headers.forEach(request::setHeader);
+
+        Semaphore permits = hostPermits.computeIfAbsent(
+                uri.getHost().toLowerCase(Locale.ROOT), h -> new Semaphore(MAX_PER_HOST, true));
+        try {
+            while (!permits.tryAcquire(PERMIT_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (abandoned.getAsBoolean()) throw new IOException("Abandoned while waiting for connection to " + uri.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for connection to " + uri.getHost(), e);
+        }
+
+        try {
+            HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            return new StreamResponse(url, response, permits, timeout);
+        } catch (InterruptedException e) {
+            permits.release();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted: " + url, e);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Сколько соединений с хостом этого URL сейчас свободно.
+     */
+    static int availablePermits(String url) {
+        try {
+            Semaphore permits = hostPermits.get(toUri(url).getHost().toLowerCase(Locale.ROOT));
+            return permits != null ? permits.availablePermits() : MAX_PER_HOST;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // относительные и битые адреса (например, спарсенные пути обложек) — ошибка ввода-вывода, а не NPE
+    private static URI toUri(String url) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed URL: " + url, e);
+        }
+        if (uri.getHost() == null) throw new IOException("No host in URL: " + url);
+        return uri;
+    }
+
+    public static StreamResponse open(String url, Duration timeout) throws IOException {
+        return open(url, timeout, Map.of());
+    }
+
+    /**
+     * Открывает ответ и проверяет, что код 2xx.
+     */
+    public static StreamResponse openOk(String url, Duration timeout, Map<String, String> headers) throws IOException {
+        StreamResponse response = open(url, timeout, headers);
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new HttpStatusException(response.statusCode(), url);
+        }
+        return response;
+    }
+
+    public static byte[] getBytes(String url, Duration timeout) throws IOException {
+        try (StreamResponse response = openOk(url, timeout, Map.of())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    response.contentLength() > 0 ? (int) Math.min(response.contentLength(), Integer.MAX_VALUE) : 8192);
+            response.body().transferTo(out);
+            return out.toByteArray();
+        }
+    }
+
+    public static Document getDocument(String url, Duration timeout, Map<String, String> headers) throws IOException {
+        try (StreamResponse response = openOk(url, timeout, headers)) {
+            return Jsoup.parse(response.body(), response.charset().name(), url);
+        }
+    }
+
+    public static class StreamResponse implements Closeable {
+        private final String url;
+        private final HttpResponse<InputStream> response;
+        private final InputStream body;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile Runnable onClose;
+        private final long readTimeoutNanos;
+        // начало текущего чтения тела (System.nanoTime()), 0 — чтение не идёт;
+        // пока вызывающий сам не читает (например, клиент прокси на паузе), ответ не считается зависшим
+        private volatile long readStarted;
+        private volatile boolean timedOut;
+
+        StreamResponse(String url, HttpResponse<InputStream> response, Semaphore permits, Duration timeout) throws IOException {
+            this.url = url;
+            this.response = response;
+            this.permits = permits;
+            this.readTimeoutNanos = timeout.toNanos();
+            InputStream decoded;
+            try {
+                decoded = decode(response);
+            } catch (IOException e) {
+                response.body().close();
+                throw e;
+            }
+            this.body = new FilterInputStream(decoded) {
+                @Override
+                public int read() throws IOException {
+                    beginRead();
+                    try {
+                        return checkTimeout(super.read());
+                    } catch (IOException e) {
+                        throw timeoutOr(e);
+                    } finally {
+                        readStarted = 0;
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    beginRead();
+                    try {
+                        return checkTimeout(super.read(b, off, len));
+                    } catch (IOException e) {
+                        throw timeoutOr(e);
+                    } finally {
+                        readStarted = 0;
+                    }
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    beginRead();
+                    try {
+                        return super.skip(n);
+                    } catch (IOException e) {
+                        throw timeoutOr(e);
+                    } finally {
+                        readStarted = 0;
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+            openResponses.add(this);
+        }
+
+        private void beginRead() throws IOException {
+            if (timedOut) throw new SocketTimeoutException("Read timed out: " + url);
+            readStarted = System.nanoTime();
+        }
+
+        // после закрытия сторожем поток может вернуть -1, а не исключение — обрезанное тело не должно сойти за целое
+        private int checkTimeout(int result) throws IOException {
+            if (timedOut) throw new SocketTimeoutException("Read timed out: " + url);
+            return result;
+        }
+
+        private IOException timeoutOr(IOException e) {
+            if (!timedOut) return e;
+            SocketTimeoutException timeout = new SocketTimeoutException("Read timed out: " + url);
+            timeout.initCause(e);
+            return timeout;
+        }
+
+        private void abortIfStalled(long now) {
+            long started = readStarted;
+            if (started == 0 || now - started < readTimeoutNanos) return;
+            timedOut = true;
+            try {
+                response.body().close();
+            } catch (IOException ignored) {}
+        }
+
+        private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+            String encoding = response.headers().firstValue("Content-Encoding").orElse("").toLowerCase(Locale.ROOT);
+            return switch (encoding) {
+                case "gzip", "x-gzip" -> new GZIPInputStream(response.body(), 16 * 1024);
+                case "deflate" -> new InflaterInputStream(response.body());
+                default -> response.body();
+            };
+        }
+
+        public String url() {
+            return url;
+        }
+
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        public boolean isSuccessful() {
+            return statusCode() / 100 == 2;
+        }
+
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        public String header(String name) {
+            return response.headers().firstValue(name).orElse(null);
+        }
+
+        /**
+         * Длина тела по Content-Length, или -1 если неизвестна (либо тело сжато).
+         */
+        public long contentLength() {
+            if (header("Content-Encoding") != null) return -1;
+            return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        }
+
+        public Charset charset() {
+            String type = header("Content-Type");
+            if (type != null) {
+                for (String part : type.split(";")) {
+                    part = part.trim();
+                    if (part.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                        try {
+                            return Charset.forName(part.substring(8).replace("\"", "").trim());
+                        } catch (Exception ignored) {}
+                    }
+                }
+            }
+            return StandardCharsets.UTF_8;
+        }
+
+        public InputStream body() {
+            return body;
+        }
+
+        /**
+         * Действие, выполняемое один раз при закрытии ответа (освобождение слота планировщика и т.п.).
+         */
+        void onClose(Runnable action) {
+            this.onClose = action;
+        }
+
+        private void release() {
+            if (!released.compareAndSet(false, true)) return;
+            openResponses.remove(this);
+            permits.release();
+            Runnable action = onClose;
+            if (action != null) action.run();
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    public static class HttpStatusException extends IOException {
+        private final int statusCode;
+
+        public HttpStatusException(int statusCode, String url) {
+            super("HTTP " + statusCode + " for " + url);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package musicsearch.service;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import musicsearch.models.LibraryChange;
+import musicsearch.models.LibraryEntry;
+import musicsearch.models.MediaModel;
+
+/**
+ * Локальный каталог музыки, сохраняемый на диск.
+ * Ключ записи — путь к файлу; запись считается актуальной, пока не изменились размер и mtime,
+ * поэтому при повторном сканировании теги перечитываются только у новых/изменённых файлов.
+ */
+public class LibraryIndex {
+    public static final File MUSIC_DIR = new File(System.getProperty("user.home"), "Music");
+    private static final Path INDEX_FILE = Paths.get(System.getProperty("user.home"), ".musicsearch", "library.json");
+    private static final Type ENTRY_LIST_TYPE = new TypeToken<List<LibraryEntry>>() {}.getType();
+    private static final Gson gson = new Gson();
+
+    private static final int BATCH_SIZE = Config.getInt("SCAN_BATCH_SIZE", 40);
+    private static final long BATCH_INTERVAL_MS = 150;
+
+    private final Path indexFile;
+    // чтение тегов упирается в диск: на HDD стоит уменьшить SCAN_THREADS до 1-2
+    private final ExecutorService scanPool = Executors.newFixedThreadPool(
+            Config.getInt("SCAN_THREADS", Math.min(Runtime.getRuntime().availableProcessors(), 4)), r -> {
+                Thread t = new Thread(r);
+                t.setName("library-scan-" + t.getId());
+                t.setDaemon(true);
+                return t;
+            });
+    private final Map<String, LibraryEntry> entries = new ConcurrentHashMap<>();
+    // ключи TrackKey всех локальных треков; набор заменяется целиком, читатели не видят его в промежуточном состоянии
+    private volatile Set<String> trackKeys = Set.of();
+
+    public LibraryIndex() {
+        this(INDEX_FILE);
+    }
+
+    public LibraryIndex(Path indexFile) {
+        this.indexFile = indexFile;
+        load();
+        rebuildKeys();
+    }
+
+    public static boolean isAudioFile(String name) {
+        return name.endsWith(".mp3") || name.endsWith(".flac");
+    }
+
+    /**
+     * Файл лежит прямо в папке библиотеки: только такие попадают в индекс, иначе rescan их не отследит
+     * (rescan читает лишь верхний уровень MUSIC_DIR, подпапки не обходит).
+     */
+    public static boolean isInMusicDir(File file) {
+        return MUSIC_DIR.getAbsoluteFile().equals(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Сверяет каталог с содержимым папки: перечитывает теги только у файлов, чей ключ изменился,
+     * удаляет записи об исчезнувших файлах и сохраняет индекс, если что-то поменялось.
+     * Неизменённые записи отдаются первым пакетом сразу, изменённые файлы читаются параллельно
+     * и передаются в onBatch порциями по мере готовности. При отмене токена сканирование
+     * прерывается, уже прочитанные записи остаются в индексе.
+     */
+    public synchronized List<MediaModel> rescan(File root, CancellationToken token,
+                                                Consumer<List<MediaModel>> onBatch) {
+        List<MediaModel> models = new ArrayList<>();
+        File[] files = root.listFiles((dir, name) -> isAudioFile(name));
+        if (files == null) return models;
+
+        Set<String> seen = new HashSet<>();
+        List<File> changedFiles = new ArrayList<>();
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            seen.add(path);
+            LibraryEntry entry = entries.get(path);
+            if (entry != null && entry.matches(file)) {
+                models.add(entry.toMediaModel());
+            } else {
+                changedFiles.add(file);
+            }
+        }
+        if (!models.isEmpty()) onBatch.accept(new ArrayList<>(models));
+
+        boolean changed = false;
+        if (!changedFiles.isEmpty()) {
+            CompletionService<LibraryEntry> completion = new ExecutorCompletionService<>(scanPool);
+            List<Future<LibraryEntry>> pending = new ArrayList<>();
+            for (File file : changedFiles) {
+                pending.add(completion.submit(() -> token.isCancelled() ? null : readEntry(file)));
+            }
+
+            List<MediaModel> batch = new ArrayList<>();
+            long lastFlush = System.currentTimeMillis();
+            try {
+                for (int done = 0; done < pending.size() && !token.isCancelled(); ) {
+                    Future<LibraryEntry> future = completion.poll(BATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (future != null) {
+                        done++;
+                        LibraryEntry entry = future.get();
+                        if (entry != null) {
+                            entries.put(entry.getPath(), entry);
+                            changed = true;
+                            MediaModel model = entry.toMediaModel();
+                            models.add(model);
+                            batch.add(model);
+                        }
+                    }
+                    long now = System.currentTimeMillis();
+                    if (!batch.isEmpty() && (batch.size() >= BATCH_SIZE || now - lastFlush >= BATCH_INTERVAL_MS)) {
+                        onBatch.accept(batch);
+                        batch = new ArrayList<>();
+                        lastFlush = now;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                token.cancel();
+            } catch (ExecutionException e) {
+                System.err.println("Library scan failed: " + e.getCause());
+            }
+
+            if (token.isCancelled()) {
+                pending.forEach(f -> f.cancel(false));
+            } else if (!batch.isEmpty()) {
+                onBatch.accept(batch);
+            }
+        }
+
+        // удалять записи можно только после полного прохода, иначе потеряем непрочитанные
+        if (!token.isCancelled()) {
+            String rootPath = root.getAbsolutePath() + File.separator;
+            changed |= entries.keySet().removeIf(p -> p.startsWith(rootPath) && !seen.contains(p));
+        }
+        if (changed) commit();
+        return models;
+    }
+
+    /**
+     * Применяет изменения отдельных файлов без полного сканирования папки:
+     * существующий файл перечитывается (если изменился ключ), отсутствующий — удаляется из индекса.
+     */
+    public synchronized LibraryChange applyChanges(Collection<File> files) {
+        List<MediaModel> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            if (!file.isFile()) {
+                if (entries.remove(path) != null) removed.add(file.toURI().toString());
+                continue;
+            }
+            LibraryEntry entry = entries.get(path);
+            if (entry != null && entry.matches(file)) continue;
+            entry = readEntry(file);
+            if (entry == null) continue;
+            entries.put(path, entry);
+            updated.add(entry.toMediaModel());
+        }
+        LibraryChange change = new LibraryChange(updated, removed);
+        if (!change.isEmpty()) commit();
+        return change;
+    }
+
+    /**
+     * Есть ли трек в локальной библиотеке — O(1), без блокировок.
+     */
+    public boolean isDownloaded(String artist, String title) {
+        return trackKeys.contains(TrackKey.of(artist, title));
+    }
+
+    public boolean isDownloaded(MediaModel model) {
+        String[] parts = model.getTitle().split(" - ", 2);
+        return parts.length == 2 && isDownloaded(parts[0], parts[1]);
+    }
+
+    public synchronized List<File> indexedFiles(File root) {
+        String rootPath = root.getAbsolutePath() + File.separator;
+        List<File> files = new ArrayList<>();
+        for (String path : entries.keySet()) {
+            if (path.startsWith(rootPath)) files.add(new File(path));
+        }
+        return files;
+    }
+
+    private LibraryEntry readEntry(File file) {
+        try {
+            AudioFile audioFile = AudioFileIO.read(file);
+            Tag tag = audioFile.getTag();
+            if (tag == null) {
+                System.err.println("No tags in " + file.getName());
+                return null;
+            }
+            int length = audioFile.getAudioHeader().getTrackLength();
+            String duration = String.valueOf(length / 60) + ":" + String.format("%02d", length % 60);
+            String path = file.getAbsolutePath();
+            return new LibraryEntry(path, file.length(), file.lastModified(),
+                    tag.getFirst(FieldKey.ARTIST), tag.getFirst(FieldKey.TITLE), duration,
+                    MP3CoverExtractor.extractCover(tag, path));
+        } catch (Exception e) {
+            System.err.println("Error reading tags from " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void commit() {
+        rebuildKeys();
+        save();
+    }
+
+    private void rebuildKeys() {
+        Set<String> keys = new HashSet<>(entries.size() * 2);
+        for (LibraryEntry entry : entries.values()) {
+            keys.add(TrackKey.of(entry.getArtist(), entry.getTitle()));
+        }
+        trackKeys = keys;
+    }
+
+    private void load() {
+        if (!Files.exists(indexFile)) return;
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            List<LibraryEntry> list = gson.fromJson(reader, ENTRY_LIST_TYPE);
+            if (list == null) return;
+            for (LibraryEntry entry : list) {
+                if (entry != null && entry.getPath() != null) entries.put(entry.getPath(), entry);
+            }
+        } catch (Exception e) {
+            // повреждённый индекс не критичен — просто пересканируем с нуля
+            System.err.println("Library index is unreadable, rebuilding: " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tmp = Files.createTempFile(indexFile.getParent(), "library_", ".json");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(new ArrayList<>(entries.values()), ENTRY_LIST_TYPE, writer);
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.err.println("Error saving library index: " + e.getMessage());
+        }
+    }
+}
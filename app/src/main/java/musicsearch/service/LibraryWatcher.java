@@ -0,0 +1,113 @@
+package musicsearch.service;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import musicsearch.models.LibraryChange;
+import musicsearch.models.LibraryChangeListener;
+
+/**
+ * Следит за папками с музыкой и применяет изменения к индексу по одному файлу.
+ * События копятся, пока в папке не наступит пауза в DEBOUNCE_MS (но не дольше MAX_DELAY_MS),
+ * после чего одним пакетом уходят в индекс и слушателю.
+ */
+public class LibraryWatcher {
+    private static final long DEBOUNCE_MS = Config.getLong("WATCH_DEBOUNCE_MS", 500);
+    private static final long MAX_DELAY_MS = DEBOUNCE_MS * 6;
+
+    private final LibraryIndex index;
+    private final List<File> roots;
+    private final LibraryChangeListener listener;
+    private WatchService watchService;
+    private Thread thread;
+
+    public LibraryWatcher(LibraryIndex index, List<File> roots, LibraryChangeListener listener) {
+        this.index = index;
+        this.roots = roots;
+        this.listener = listener;
+    }
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (File root : roots) {
+                if (root.isDirectory()) {
+                    root.toPath().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Library watcher is disabled: " + e.getMessage());
+            return;
+        }
+        thread = new Thread(this::run, "library-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (thread != null) thread.interrupt();
+        try {
+            if (watchService != null) watchService.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void run() {
+        Set<File> pending = new LinkedHashSet<>();
+        long firstPendingAt = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    if (pending.isEmpty()) firstPendingAt = System.currentTimeMillis();
+                    collectEvents(key, pending);
+                }
+
+                boolean quiet = key == null;
+                boolean overdue = System.currentTimeMillis() - firstPendingAt >= MAX_DELAY_MS;
+                if (!pending.isEmpty() && (quiet || overdue)) {
+                    LibraryChange change = index.applyChanges(pending);
+                    pending = new LinkedHashSet<>();
+                    if (!change.isEmpty()) listener.onLibraryChanged(change);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // остановлено через stop()
+        }
+    }
+
+    private void collectEvents(WatchKey key, Set<File> pending) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // часть событий потеряна — сверяем всё, что есть на диске и в индексе
+                File[] files = dir.toFile().listFiles((d, name) -> LibraryIndex.isAudioFile(name));
+                if (files != null) pending.addAll(List.of(files));
+                pending.addAll(index.indexedFiles(dir.toFile()));
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (LibraryIndex.isAudioFile(name.toString())) {
+                pending.add(dir.resolve(name).toFile().getAbsoluteFile());
+            }
+        }
+        key.reset();
+    }
+}
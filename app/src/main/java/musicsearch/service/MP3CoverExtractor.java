@@ -41,8 +41,19 @@ public class MP3CoverExtractor {
         if (filePath == null) return null;
         try {
             AudioFile audioFile = AudioFileIO.read(new File(filePath));
-            Tag tag = audioFile.getTag();
-            if (tag == null) return null;
+            return extractCover(audioFile.getTag(), filePath);
+        } catch (Exception e) {
+            System.err.println("Error extracting cover from MP3: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * То же, что extractCoverFromMP3, но по уже прочитанному тегу — без повторного чтения файла.
+     */
+    public static String extractCover(Tag tag, String filePath) {
+        if (tag == null || filePath == null) return null;
+        try {
             Artwork artwork = tag.getFirstArtwork();
             if (artwork == null) return null;
             byte[] imageData = artwork.getBinaryData();
@@ -0,0 +1,116 @@
+package musicsearch.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.google.gson.Gson;
+
+/**
+ * Недокачанный файл: данные пишутся в "имя.part", рядом лежит "имя.part.json" с URL, ETag и длиной.
+ * По этим данным повторная попытка продолжает загрузку с последнего байта (для сегментной загрузки —
+ * с последнего байта каждого сегмента), а в итоговое имя файл переносится только после проверки длины.
+ */
+public class PartFile {
+    private static final Gson gson = new Gson();
+
+    private final Path target;
+    private final Path part;
+    private final Path sidecar;
+
+    public static class Meta {
+        String url;
+        String etag;
+        long length = -1;
+        // для сегментной загрузки: оставшиеся диапазоны [начало, конец); null — файл пишется подряд
+        long[][] segments;
+
+        Meta(String url, String etag, long length, long[][] segments) {
+            this.url = url;
+            this.etag = etag;
+            this.length = length;
+            this.segments = segments;
+        }
+    }
+
+    public PartFile(File target) {
+        this.target = target.toPath();
+        this.part = target.toPath().resolveSibling(target.getName() + ".part");
+        this.sidecar = target.toPath().resolveSibling(target.getName() + ".part.json");
+    }
+
+    public Path getPart() {
+        return part;
+    }
+
+    /**
+     * Метаданные прежней попытки для этого URL, или null, если продолжать нечего.
+     */
+    public Meta resumable(String url) {
+        if (!Files.exists(part) || !Files.exists(sidecar)) return null;
+        try (Reader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+            Meta meta = gson.fromJson(reader, Meta.class);
+            return meta != null && url.equals(meta.url) ? meta : null;
+        } catch (Exception e) {
+            System.err.println("Unreadable download sidecar " + sidecar + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public long existingBytes() {
+        try {
+            return Files.exists(part) ? Files.size(part) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public void writeMeta(String url, String etag, long length) throws IOException {
+        writeMeta(url, etag, length, null);
+    }
+
+    public void writeMeta(String url, String etag, long length, long[][] segments) throws IOException {
+        Path tmp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            gson.toJson(new Meta(url, etag, length, segments), writer);
+        }
+        move(tmp, sidecar);
+    }
+
+    /**
+     * Проверяет длину и атомарно переносит .part в итоговый файл.
+     *
+     * @param expectedLength ожидаемый размер, или -1 если сервер его не сообщил
+     */
+    public void commit(long expectedLength) throws IOException {
+        long actual = Files.size(part);
+        if (expectedLength >= 0 && actual != expectedLength) {
+            throw new IOException("Incomplete download: " + actual + " of " + expectedLength + " bytes");
+        }
+        move(part, target);
+        Files.deleteIfExists(sidecar);
+    }
+
+    public void discard() {
+        try {
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(sidecar);
+        } catch (IOException e) {
+            System.err.println("Could not remove partial download " + part + ": " + e.getMessage());
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package musicsearch.service;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Время до первого звука по этапам и число срывов/ошибок воспроизведения, отдельно для локальных файлов,
+ * треков из аудиокеша, треков с заранее подгруженным началом и сетевых потоков. Хранит последние PLAYBACK_METRICS_WINDOW замеров каждого этапа,
+ * перцентили считаются по ним при запросе.
+ */
+public class PlaybackMetrics {
+    private static final int WINDOW = Config.getInt("PLAYBACK_METRICS_WINDOW", 256);
+
+    public enum Source { LOCAL, CACHED, PREFETCHED, REMOTE }
+
+    /**
+     * MEDIA — от клика до создания Media, READY — до onReady, PLAYING — от onReady до onPlaying,
+     * TOTAL — от клика до onPlaying, PRELOADED — то же для заранее подготовленного плеера.
+     */
+    public enum Phase { MEDIA, READY, PLAYING, TOTAL, PRELOADED }
+
+    private static class Window {
+        final long[] samples = new long[Math.max(WINDOW, 1)];
+        int size = 0;
+        int next = 0;
+
+        void add(long value) {
+            samples[next] = value;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) size++;
+        }
+
+        long percentile(double p) {
+            if (size == 0) return -1;
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * size) - 1;
+            return sorted[Math.min(Math.max(index, 0), size - 1)];
+        }
+    }
+
+    private static class SourceStats {
+        final Map<Phase, Window> phases = new EnumMap<>(Phase.class);
+        long starts;
+        long stalls;
+        long errors;
+
+        SourceStats() {
+            for (Phase phase : Phase.values()) phases.put(phase, new Window());
+        }
+    }
+
+    /**
+     * Замер одного запуска трека; отметки этапов ставятся по мере прохождения, каждая не больше одного раза.
+     */
+    public class Attempt {
+        private final Source source;
+        private final boolean preloaded;
+        private final long clickedAt;
+        private long mediaAt;
+        private long readyAt;
+        private long totalMillis = -1;
+
+        private Attempt(Source source, boolean preloaded, long clickedAt) {
+            this.source = source;
+            this.preloaded = preloaded;
+            this.clickedAt = clickedAt;
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        public boolean isPreloaded() {
+            return preloaded;
+        }
+
+        public void mediaCreated() {
+            if (mediaAt != 0 || preloaded) return;
+            mediaAt = System.nanoTime();
+            record(source, Phase.MEDIA, clickedAt, mediaAt);
+        }
+
+        public void ready() {
+            if (readyAt != 0 || preloaded) return;
+            readyAt = System.nanoTime();
+            record(source, Phase.READY, clickedAt, readyAt);
+        }
+
+        public void playing() {
+            if (totalMillis >= 0) return;
+            long now = System.nanoTime();
+            if (readyAt != 0) record(source, Phase.PLAYING, readyAt, now);
+            totalMillis = record(source, preloaded ? Phase.PRELOADED : Phase.TOTAL, clickedAt, now);
+        }
+
+        /**
+         * Время от клика до начала звука, мс, или -1, если звук ещё не пошёл.
+         */
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+    }
+
+    private final Map<Source, SourceStats> stats = new EnumMap<>(Source.class);
+
+    public PlaybackMetrics() {
+        for (Source source : Source.values()) stats.put(source, new SourceStats());
+    }
+
+    /**
+     * Источник по исходному URL трека и URL, который реально открывается плеером.
+     */
+    public static Source sourceOf(String url, String resolvedUrl) {
+        if (!AudioCache.isCacheable(url)) return Source.LOCAL;
+        if (url.equals(resolvedUrl)) return Source.REMOTE;
+        return resolvedUrl.startsWith("file:") ? Source.CACHED : Source.PREFETCHED;
+    }
+
+    /**
+     * @param clickedAt момент команды на воспроизведение, System.nanoTime()
+     */
+    public synchronized Attempt start(Source source, boolean preloaded, long clickedAt) {
+        stats.get(source).starts++;
+        return new Attempt(source, preloaded, clickedAt);
+    }
+
+    public synchronized void stalled(Source source) {
+        stats.get(source).stalls++;
+    }
+
+    public synchronized void failed(Source source) {
+        stats.get(source).errors++;
+    }
+
+    /**
+     * Перцентиль этапа в мс (p от 0 до 1), или -1, если замеров ещё нет.
+     */
+    public synchronized long percentile(Source source, Phase phase, double p) {
+        return stats.get(source).phases.get(phase).percentile(p);
+    }
+
+    public synchronized long getStarts(Source source) {
+        return stats.get(source).starts;
+    }
+
+    public synchronized long getStalls(Source source) {
+        return stats.get(source).stalls;
+    }
+
+    public synchronized long getErrors(Source source) {
+        return stats.get(source).errors;
+    }
+
+    private synchronized long record(Source source, Phase phase, long from, long to) {
+        long millis = (to - from) / 1_000_000;
+        stats.get(source).phases.get(phase).add(millis);
+        return millis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Source source : Source.values()) {
+            SourceStats s = stats.get(source);
+            if (s.starts == 0) continue;
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(source).append(": starts=").append(s.starts)
+                    .append(", stalls=").append(s.stalls).append(", errors=").append(s.errors);
+            for (Phase phase : Phase.values()) {
+                Window window = s.phases.get(phase);
+                if (window.size == 0) continue;
+                sb.append(", ").append(phase.name().toLowerCase())
+                        .append(" p50/p90/p99=").append(window.percentile(0.5))
+                        .append('/').append(window.percentile(0.9))
+                        .append('/').append(window.percentile(0.99)).append(" ms");
+            }
+        }
+        return sb.length() == 0 ? "no playback yet" : sb.toString();
+    }
+}
@@ -0,0 +1,328 @@
+package musicsearch.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import musicsearch.models.MediaModel;
+
+/**
+ * Очередь воспроизведения поверх списка результатов. Список не копируется: очередь держит ссылку на него
+ * и номер позиции, так что треки, дописанные в список позже, тоже попадают в очередь.
+ * Перемешивание — ленивый Фишер–Йетс: трек для позиции разыгрывается, только когда до неё дошли,
+ * а перестановка хранится разреженно (только затронутые позиции). Поэтому next/previous/jump,
+ * переключение shuffle и "играть следующим" — O(1) и без перестроения даже на 100k треков.
+ * Если список наблюдаемый, удаления и вставки в нём сдвигают позицию и уже сыгранную часть порядка.
+ * При RepeatMode.ALL с shuffle каждый новый круг перемешивается заново.
+ */
+public class PlaybackQueue {
+    public enum RepeatMode { NONE, ONE, ALL }
+
+    private final Random random;
+    private List<MediaModel> source = List.of();
+    // порядок воспроизведения при shuffle: позиция -> индекс в source; отсутствующая позиция — без перестановки
+    private final Map<Integer, Integer> order = new HashMap<>();
+    // позиции [0, drawn) уже разыграны и больше не меняются
+    private int drawn = 0;
+    private int position = -1;
+    // трек, которым начнётся следующий круг перемешивания; разыгрывается заранее, чтобы peekNext совпал с next
+    private int nextRoundStart = -1;
+    private final ListChangeListener<MediaModel> sourceListener = this::onSourceChanged;
+    private final Deque<MediaModel> upNext = new ArrayDeque<>();
+    private MediaModel current;
+    private boolean playingInserted = false;
+    private boolean shuffle = false;
+    private RepeatMode repeatMode = RepeatMode.NONE;
+
+    public PlaybackQueue() {
+        this(new Random());
+    }
+
+    public PlaybackQueue(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Делает list источником очереди и встаёт на трек index (или никуда, если index вне списка).
+     * Повторный выбор текущего трека в том же списке очередь не сбрасывает: "играть следующим" и порядок
+     * перемешивания сохраняются.
+     */
+    public MediaModel setSource(List<MediaModel> list, int index) {
+        if (isSource(list) && index >= 0 && index < source.size() && source.get(index).equals(current)) return current;
+        if (source instanceof ObservableList) ((ObservableList<MediaModel>) source).removeListener(sourceListener);
+        source = list != null ? list : List.of();
+        if (source instanceof ObservableList) ((ObservableList<MediaModel>) source).addListener(sourceListener);
+        upNext.clear();
+        current = null;
+        position = -1;
+        playingInserted = false;
+        resetOrder();
+        return jumpTo(index);
+    }
+
+    /**
+     * Переход к треку по его индексу в списке. При shuffle с него начинается новый круг перемешивания.
+     */
+    public MediaModel jumpTo(int index) {
+        if (index < 0 || index >= source.size()) return null;
+        if (shuffle) {
+            resetOrder();
+            swap(0, index);
+            drawn = 1;
+            position = 0;
+        } else {
+            position = index;
+        }
+        playingInserted = false;
+        current = source.get(index);
+        return current;
+    }
+
+    /**
+     * Следующий трек по команде пользователя (повтор одного трека не учитывается), или null в конце очереди.
+     */
+    public MediaModel next() {
+        MediaModel inserted = upNext.poll();
+        if (inserted != null) {
+            playingInserted = true;
+            current = inserted;
+            return current;
+        }
+        if (wrapsShuffled()) startNextRound();
+        int next = nextPosition();
+        MediaModel model = at(next);
+        if (model == null) return null;
+        position = next;
+        playingInserted = false;
+        current = model;
+        return current;
+    }
+
+    /**
+     * Следующий трек после естественного окончания текущего: при RepeatMode.ONE — тот же самый.
+     */
+    public MediaModel advance() {
+        if (repeatMode == RepeatMode.ONE && current != null) return current;
+        return next();
+    }
+
+    /**
+     * Трек, который вернёт advance(), без сдвига очереди; null — после текущего ничего нет.
+     */
+    public MediaModel peekNext() {
+        if (repeatMode == RepeatMode.ONE && current != null) return current;
+        MediaModel inserted = upNext.peek();
+        if (inserted != null) return inserted;
+        if (wrapsShuffled()) return source.get(nextRoundStart());
+        return at(nextPosition());
+    }
+
+    /**
+     * Предыдущий трек, или null, если назад идти некуда. При shuffle назад — только по уже сыгранным.
+     */
+    public MediaModel previous() {
+        if (playingInserted && position >= 0) {
+            // вставленный трек вне основного порядка: назад — к треку, после которого его вставили
+            playingInserted = false;
+            current = at(position);
+            return current;
+        }
+        int prev = position - 1;
+        if (prev < 0) {
+            if (repeatMode != RepeatMode.ALL || shuffle || source.isEmpty()) return null;
+            prev = source.size() - 1;
+        }
+        MediaModel model = at(prev);
+        if (model == null) return null;
+        position = prev;
+        current = model;
+        return current;
+    }
+
+    /**
+     * Ставит трек сразу после текущего; вставленные позже играют раньше.
+     */
+    public void insertNext(MediaModel model) {
+        if (model != null) upNext.push(model);
+    }
+
+    public void setShuffle(boolean on) {
+        if (on == shuffle) return;
+        int index = currentIndex();
+        resetOrder();
+        shuffle = on;
+        if (index < 0) return;
+        if (on) {
+            // текущий трек становится первым в перемешанном порядке, остальные разыгрываются по ходу
+            swap(0, index);
+            drawn = 1;
+            position = 0;
+        } else {
+            position = index;
+        }
+    }
+
+    public boolean isShuffle() {
+        return shuffle;
+    }
+
+    public void setRepeatMode(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode != null ? repeatMode : RepeatMode.NONE;
+    }
+
+    public RepeatMode getRepeatMode() {
+        return repeatMode;
+    }
+
+    public boolean isSource(List<MediaModel> list) {
+        return list != null && list == source;
+    }
+
+    public MediaModel current() {
+        return current;
+    }
+
+    /**
+     * Индекс в списке трека на текущей позиции основного порядка, или -1.
+     */
+    public int currentIndex() {
+        if (position < 0 || position >= source.size()) return -1;
+        return shuffle ? draw(position) : position;
+    }
+
+    public boolean isEmpty() {
+        return source.isEmpty() && upNext.isEmpty();
+    }
+
+    private int nextPosition() {
+        int next = position + 1;
+        if (next < source.size()) return next;
+        return repeatMode == RepeatMode.ALL && !source.isEmpty() ? 0 : -1;
+    }
+
+    private boolean wrapsShuffled() {
+        return shuffle && repeatMode == RepeatMode.ALL && !source.isEmpty() && position + 1 >= source.size();
+    }
+
+    private int nextRoundStart() {
+        int size = source.size();
+        if (nextRoundStart < 0 || nextRoundStart >= size) {
+            int last = currentIndex();
+            if (size == 1 || last < 0) {
+                nextRoundStart = random.nextInt(size);
+            } else {
+                // не тот же трек, что только что доиграл
+                int index = random.nextInt(size - 1);
+                nextRoundStart = index >= last ? index + 1 : index;
+            }
+        }
+        return nextRoundStart;
+    }
+
+    // новый круг: доигравший трек остаётся на позиции 0 (к нему ведёт previous), остальные перемешиваются заново
+    private void startNextRound() {
+        int last = currentIndex();
+        int first = nextRoundStart();
+        resetOrder();
+        position = -1;
+        if (last >= 0 && last != first) {
+            swap(0, last);
+            drawn = 1;
+            position = 0;
+        }
+        swap(drawn, positionOf(first));
+        drawn++;
+    }
+
+    private int positionOf(int index) {
+        for (Map.Entry<Integer, Integer> entry : order.entrySet()) {
+            if (entry.getValue() == index) return entry.getKey();
+        }
+        return index;
+    }
+
+    private void onSourceChanged(ListChangeListener.Change<? extends MediaModel> change) {
+        while (change.next()) {
+            int from = change.getFrom();
+            if (change.wasPermutated()) {
+                int to = change.getTo();
+                remap(i -> i >= from && i < to ? change.getPermutation(i) : i, from);
+                continue;
+            }
+            int removed = change.getRemovedSize();
+            int added = change.getAddedSize();
+            // замена элемента на месте (обновлённые теги) и дописывание в конец позиций не сдвигают
+            if (removed == added || (removed == 0 && from + added == source.size())) continue;
+            if (removed > 0) remap(i -> i < from ? i : i < from + removed ? -1 : i - removed, from);
+            if (added > 0) remap(i -> i < from ? i : i + added, from);
+        }
+    }
+
+    // переносит позицию и сыгранную часть перемешанного порядка на изменившийся список;
+    // newIndex возвращает -1 для удалённых треков, removedAt — где они были
+    private void remap(IntUnaryOperator newIndex, int removedAt) {
+        if (!shuffle) {
+            if (position < 0) return;
+            int moved = newIndex.applyAsInt(position);
+            // текущий трек удалён: следующим пойдёт тот, что встал на его место
+            position = moved >= 0 ? moved : removedAt - 1;
+            return;
+        }
+        List<Integer> played = new ArrayList<>();
+        int newPosition = -1;
+        for (int pos = 0; pos < drawn; pos++) {
+            int index = newIndex.applyAsInt(order.getOrDefault(pos, pos));
+            if (index >= 0) played.add(index);
+            if (pos == position) newPosition = played.size() - 1;
+        }
+        resetOrder();
+        // собираем перестановку заново: сыгранные позиции по порядку, остальное разыгрывается по ходу
+        Map<Integer, Integer> where = new HashMap<>();
+        for (int pos = 0; pos < played.size(); pos++) {
+            int index = played.get(pos);
+            int at = where.getOrDefault(index, index);
+            int displaced = order.getOrDefault(pos, pos);
+            swap(pos, at);
+            where.put(displaced, at);
+            where.put(index, pos);
+        }
+        drawn = played.size();
+        position = newPosition;
+    }
+
+    private MediaModel at(int pos) {
+        if (pos < 0 || pos >= source.size()) return null;
+        int index = shuffle ? draw(pos) : pos;
+        return index < source.size() ? source.get(index) : null;
+    }
+
+    // разыгрывает позиции до pos включительно: шаг Фишера–Йетса на каждую ещё не разыгранную позицию
+    private int draw(int pos) {
+        int size = source.size();
+        while (drawn <= pos && drawn < size) {
+            swap(drawn, drawn + random.nextInt(size - drawn));
+            drawn++;
+        }
+        return order.getOrDefault(pos, pos);
+    }
+
+    private void swap(int a, int b) {
+        int va = order.getOrDefault(a, a);
+        int vb = order.getOrDefault(b, b);
+        order.put(a, vb);
+        order.put(b, va);
+    }
+
+    private void resetOrder() {
+        order.clear();
+        drawn = 0;
+        nextRoundStart = -1;
+    }
+}
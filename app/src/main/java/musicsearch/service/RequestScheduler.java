@@ -0,0 +1,243 @@
+package musicsearch.service;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import musicsearch.models.RequestStats;
+
+/**
+ * Планировщик исходящих запросов к одному хосту.
+ * Темп ограничивается token bucket, а число одновременных запросов подстраивается по AIMD:
+ * растёт, пока ответы быстрые, и уменьшается при медленных ответах и 429/503.
+ * Идемпотентные запросы повторяются с экспоненциальной задержкой со случайным разбросом.
+ */
+public class RequestScheduler {
+    private static final long BACKOFF_BASE_MS = 300;
+    private static final long BACKOFF_CAP_MS = 5000;
+    private static final long WAIT_SLICE_MS = 50;
+
+    private final double ratePerSec;
+    private final double burst;
+    private final int minLimit = 1;
+    private final int maxLimit;
+    private final long targetLatencyMs;
+    private final int maxRetries;
+    private final int maxQueue;
+
+    // token bucket и окно параллельности; всё под монитором this
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = 0;
+    private double limit;
+    private int inFlight = 0;
+    private int waiting = 0;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public RequestScheduler(String prefix) {
+        this(Config.getInt(prefix + "_RATE_PER_SEC", 4),
+             Config.getInt(prefix + "_RATE_BURST", 6),
+             Config.getInt(prefix + "_MAX_CONCURRENCY", 4),
+             Config.getLong(prefix + "_TARGET_LATENCY_MS", 1500),
+             Config.getInt(prefix + "_RETRIES", 2),
+             Config.getInt(prefix + "_MAX_QUEUE", 16));
+    }
+
+    public RequestScheduler(double ratePerSec, int burst, int maxConcurrency, long targetLatencyMs,
+                            int maxRetries, int maxQueue) {
+        this.ratePerSec = Math.max(ratePerSec, 0.1);
+        this.burst = Math.max(burst, 1);
+        this.maxLimit = Math.max(maxConcurrency, minLimit);
+        this.targetLatencyMs = targetLatencyMs;
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.maxQueue = Math.max(maxQueue, 1);
+        this.tokens = this.burst;
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Открывает успешный (2xx) ответ, дождавшись слота и токена; при таймауте, 429 и 5xx шлюза
+     * запрос повторяется. Слот занят до закрытия ответа.
+     *
+     * @param cancelled проверяется во время ожидания; при true бросается CancellationException
+     * @throws IOException если очередь переполнена, попытки исчерпаны или ответ не 2xx
+     */
+    public HttpService.StreamResponse open(String url, Duration timeout, Map<String, String> headers,
+                                           BooleanSupplier cancelled) throws IOException {
+        requests.incrementAndGet();
+        for (int attempt = 0; ; attempt++) {
+            acquireSlot(cancelled);
+            long retryAfterMs = -1;
+            IOException failure;
+            long started = System.nanoTime();
+            try {
+                HttpService.StreamResponse response = HttpService.open(url, timeout, headers);
+                long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                int status = response.statusCode();
+                if (response.isSuccessful()) {
+                    onSuccess(latencyMs);
+                    response.onClose(this::releaseSlot);
+                    return response;
+                }
+                response.close();
+                if (status == 429 || status == 503) {
+                    retryAfterMs = parseRetryAfter(response.header("Retry-After"));
+                    onThrottled(retryAfterMs);
+                } else {
+                    onSlow();
+                }
+                releaseSlot();
+                failure = new HttpService.HttpStatusException(status, url);
+                if (!isRetryable(status)) throw failure;
+            } catch (HttpTimeoutException e) {
+                onSlow();
+                releaseSlot();
+                failure = e;
+            } catch (HttpService.HttpStatusException e) {
+                throw e;
+            } catch (IOException e) {
+                releaseSlot();
+                failure = e;
+            }
+
+            if (attempt >= maxRetries || cancelled.getAsBoolean()) throw failure;
+            retried.incrementAndGet();
+            sleep(Math.max(retryAfterMs, backoff(attempt)), cancelled);
+        }
+    }
+
+    public RequestStats getStats() {
+        synchronized (this) {
+            return new RequestStats(requests.get(), queued.get(), retried.get(), shed.get(), throttled.get(),
+                    (int) limit, inFlight);
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    // full jitter: случайная задержка в [0, min(cap, base * 2^attempt)]
+    private static long backoff(int attempt) {
+        long ceiling = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << Math.min(attempt, 10));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static long parseRetryAfter(String value) {
+        if (value == null) return -1;
+        try {
+            return Math.min(TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())), BACKOFF_CAP_MS * 4);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private synchronized void acquireSlot(BooleanSupplier cancelled) throws RejectedRequestException {
+        boolean counted = false;
+        try {
+            while (true) {
+                if (cancelled.getAsBoolean()) {
+                    shed.incrementAndGet();
+                    throw new CancellationException();
+                }
+                refill();
+                long now = System.nanoTime();
+                long waitMs;
+                if (now < pausedUntil) {
+                    waitMs = TimeUnit.NANOSECONDS.toMillis(pausedUntil - now) + 1;
+                } else if (inFlight >= (int) limit) {
+                    waitMs = WAIT_SLICE_MS;
+                } else if (tokens < 1) {
+                    waitMs = (long) Math.ceil((1 - tokens) * 1000 / ratePerSec);
+                } else {
+                    tokens -= 1;
+                    inFlight++;
+                    return;
+                }
+
+                if (!counted) {
+                    if (waiting >= maxQueue) {
+                        shed.incrementAndGet();
+                        throw new RejectedRequestException("Request queue is full (" + maxQueue + ")");
+                    }
+                    counted = true;
+                    waiting++;
+                    queued.incrementAndGet();
+                }
+                try {
+                    wait(Math.max(1, Math.min(waitMs, WAIT_SLICE_MS)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    shed.incrementAndGet();
+                    throw new CancellationException();
+                }
+            }
+        } finally {
+            if (counted) waiting--;
+        }
+    }
+
+    private synchronized void releaseSlot() {
+        inFlight = Math.max(0, inFlight - 1);
+        notifyAll();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * ratePerSec);
+        lastRefill = now;
+    }
+
+    // аддитивный рост: примерно +1 к лимиту за окно быстрых ответов
+    private synchronized void onSuccess(long latencyMs) {
+        if (latencyMs <= targetLatencyMs) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        } else if (latencyMs > targetLatencyMs * 2) {
+            onSlow();
+        }
+    }
+
+    private synchronized void onSlow() {
+        limit = Math.max(minLimit, limit * 0.75);
+    }
+
+    // мультипликативное уменьшение и пауза для всего хоста, а не только для одного запроса
+    private synchronized void onThrottled(long retryAfterMs) {
+        throttled.incrementAndGet();
+        limit = Math.max(minLimit, limit / 2);
+        tokens = 0;
+        if (retryAfterMs > 0) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMs));
+        }
+    }
+
+    private static void sleep(long ms, BooleanSupplier cancelled) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+        try {
+            while (System.nanoTime() < deadline) {
+                if (cancelled.getAsBoolean()) throw new CancellationException();
+                Thread.sleep(Math.min(WAIT_SLICE_MS, Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    public static class RejectedRequestException extends IOException {
+        public RejectedRequestException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package musicsearch.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+
+import musicsearch.models.SearchPage;
+
+/**
+ * Кеш разобранных страниц поиска: в памяти (LRU с ограничением по числу записей и TTL)
+ * и, опционально, на диске, чтобы переживать перезапуск приложения.
+ * На диске действует тот же предел SEARCH_CACHE_SIZE: при записи удаляются самые старые файлы,
+ * а просроченный файл удаляется, как только его прочитали.
+ */
+public class SearchCache {
+    private static final Path DISK_DIR = Paths.get(System.getProperty("user.home"), ".musicsearch", "search-cache");
+    private static final Gson gson = new Gson();
+
+    private final long ttlMs;
+    private final int maxEntries;
+    private final boolean diskEnabled;
+    private final Path diskDir;
+    private final Map<String, CachedPage> memory;
+
+    public SearchCache() {
+        this(Config.getLong("SEARCH_CACHE_TTL_SEC", 600) * 1000,
+             Config.getInt("SEARCH_CACHE_SIZE", 100),
+             Config.getBoolean("SEARCH_CACHE_DISK", false));
+    }
+
+    public SearchCache(long ttlMs, int maxEntries, boolean diskEnabled) {
+        this(ttlMs, maxEntries, diskEnabled, DISK_DIR);
+    }
+
+    SearchCache(long ttlMs, int maxEntries, boolean diskEnabled, Path diskDir) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.diskEnabled = diskEnabled;
+        this.diskDir = diskDir;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+                return size() > SearchCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Только память — безопасно вызывать из FX-потока.
+     */
+    public synchronized SearchPage peek(String query, int offset) {
+        String key = key(query, offset);
+        CachedPage cached = memory.get(key);
+        if (cached == null) return null;
+        if (isExpired(cached)) {
+            memory.remove(key);
+            return null;
+        }
+        return cached.page;
+    }
+
+    /**
+     * Память, затем диск (если включён).
+     */
+    public SearchPage get(String query, int offset) {
+        SearchPage page = peek(query, offset);
+        if (page != null || !diskEnabled) return page;
+
+        CachedPage cached = readFromDisk(key(query, offset));
+        if (cached == null) return null;
+        if (isExpired(cached)) {
+            deleteFromDisk(key(query, offset));
+            return null;
+        }
+        synchronized (this) {
+            memory.put(key(query, offset), cached);
+        }
+        return cached.page;
+    }
+
+    public void put(String query, int offset, SearchPage page) {
+        String key = key(query, offset);
+        CachedPage cached = new CachedPage(System.currentTimeMillis(), page);
+        synchronized (this) {
+            memory.put(key, cached);
+        }
+        if (diskEnabled) {
+            writeToDisk(key, cached);
+            trimDisk();
+        }
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+    }
+
+    static String key(String query, int offset) {
+        String normalized = query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return normalized + "#" + offset;
+    }
+
+    private boolean isExpired(CachedPage cached) {
+        return System.currentTimeMillis() - cached.createdAt > ttlMs;
+    }
+
+    private CachedPage readFromDisk(String key) {
+        Path file = diskDir.resolve(fileName(key));
+        if (!Files.exists(file)) return null;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, CachedPage.class);
+        } catch (Exception e) {
+            System.err.println("Error reading search cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedPage cached) {
+        try {
+            Files.createDirectories(diskDir);
+            Path tmp = Files.createTempFile(diskDir, "page_", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(cached, writer);
+            }
+            Files.move(tmp, diskDir.resolve(fileName(key)),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.err.println("Error writing search cache: " + e.getMessage());
+        }
+    }
+
+    private void deleteFromDisk(String key) {
+        try {
+            Files.deleteIfExists(diskDir.resolve(fileName(key)));
+        } catch (IOException e) {
+            System.err.println("Error deleting search cache entry: " + e.getMessage());
+        }
+    }
+
+    // оставляет на диске не больше maxEntries страниц, удаляя самые давно записанные
+    private void trimDisk() {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(diskDir)) {
+            entries.filter(f -> f.getFileName().toString().endsWith(".json")).forEach(files::add);
+        } catch (IOException e) {
+            System.err.println("Error listing search cache: " + e.getMessage());
+            return;
+        }
+        if (files.size() <= maxEntries) return;
+
+        Map<Path, FileTime> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                modified.put(file, Files.getLastModifiedTime(file));
+            } catch (IOException e) {
+                // файл уже удалён другим экземпляром кеша
+            }
+        }
+        List<Path> oldestFirst = new ArrayList<>(modified.keySet());
+        oldestFirst.sort(Comparator.comparing(modified::get));
+        for (int i = 0; i < oldestFirst.size() - maxEntries; i++) {
+            try {
+                Files.deleteIfExists(oldestFirst.get(i));
+            } catch (IOException e) {
+                System.err.println("Error trimming search cache: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] dig = md.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(dig.length * 2 + 5);
+            for (byte b : dig) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.append(".json").toString();
+        } catch (Exception e) {
+            return Integer.toHexString(key.hashCode()) + ".json";
+        }
+    }
+
+    private static class CachedPage {
+        private final long createdAt;
+        private final SearchPage page;
+
+        CachedPage(long createdAt, SearchPage page) {
+            this.createdAt = createdAt;
+            this.page = page;
+        }
+    }
+}
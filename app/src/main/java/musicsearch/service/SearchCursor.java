@@ -0,0 +1,79 @@
+package musicsearch.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+import musicsearch.models.SearchPage;
+
+/**
+ * Постраничный курсор одного поискового запроса.
+ * Каждая страница запрашивается ровно один раз: повторные вызовы (скролл, предзагрузка)
+ * получают тот же future. Страница считается добавленной только после appended(true),
+ * поэтому до этого момента следующая страница не выдаётся.
+ */
+public class SearchCursor {
+    public static final int PAGE_SIZE = 48;
+
+    private final long generation;
+    private final IntFunction<CompletableFuture<SearchPage>> loader;
+    private final Map<Integer, CompletableFuture<SearchPage>> requested = new HashMap<>();
+    private int pageCount = 0;
+    private int nextPage = 1;
+    private boolean appending = false;
+
+    /**
+     * @param loader загружает страницу по смещению (номер страницы * PAGE_SIZE)
+     */
+    public SearchCursor(long generation, IntFunction<CompletableFuture<SearchPage>> loader) {
+        this.generation = generation;
+        this.loader = loader;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public synchronized void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    public synchronized boolean hasMore() {
+        return nextPage < pageCount;
+    }
+
+    public synchronized CompletableFuture<SearchPage> fetch(int page) {
+        return requested.computeIfAbsent(page, p -> loader.apply(p * PAGE_SIZE));
+    }
+
+    /**
+     * Следующая страница для добавления в результаты, или null, если страниц больше нет
+     * либо предыдущая ещё не добавлена.
+     */
+    public synchronized CompletableFuture<SearchPage> next() {
+        if (appending || !hasMore()) return null;
+        appending = true;
+        return fetch(nextPage);
+    }
+
+    /**
+     * Фоновая загрузка следующей страницы, чтобы к моменту прокрутки до конца она уже была готова.
+     */
+    public synchronized void prefetch() {
+        if (hasMore()) fetch(nextPage);
+    }
+
+    /**
+     * Вызывается после обработки страницы, выданной next(). При ошибке страница будет запрошена заново.
+     */
+    public synchronized void appended(boolean success) {
+        appending = false;
+        CompletableFuture<SearchPage> done = requested.remove(nextPage);
+        if (success) {
+            nextPage++;
+        } else if (done != null) {
+            done.cancel(false);
+        }
+    }
+}
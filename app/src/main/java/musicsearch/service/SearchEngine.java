@@ -1,70 +1,88 @@
 package musicsearch.service;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
 import ch.qos.logback.core.model.Model;
 
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.Tag;
-import java.io.File;
-
-import io.github.cdimascio.dotenv.Dotenv;
 import javafx.application.Platform;
-import javafx.beans.Observable;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.SimpleListProperty;
 import javafx.collections.FXCollections;
-import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
-import java.io.IOException;
+import java.io.File;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+import musicsearch.models.BulkDownloadReport;
 import musicsearch.models.CurrentTrackListener;
 import musicsearch.models.DataUpdateListener;
+import musicsearch.models.DownloadListener;
+import musicsearch.models.LibraryChange;
 import musicsearch.models.MediaModel;
 import musicsearch.models.PlaybackListener;
+import musicsearch.models.SearchPage;
 import musicsearch.service.Events.ArtistSearchEvent;
 import musicsearch.service.Events.LyricSearchEvent;
+import musicsearch.widgets.MediaGrid;
 import musicsearch.widgets.MediaWidget;
 
 public class SearchEngine {
     private final ListProperty<MediaModel> results = new SimpleListProperty<>(
             FXCollections.observableArrayList()
     );
-    private List<MediaModel> LocalFiles = new ArrayList<>();
     private CurrentTrackListener currentTrackListener;
     private FindLyrics lyricsFinder = new FindLyrics();
-    private GridPane mediaLayout;
+    private final LibraryIndex libraryIndex = new LibraryIndex();
+    private final SearchService searchService = new SearchService(libraryIndex, new SearchCache());
+    private volatile CancellationToken scanToken;
+    private final LibraryWatcher libraryWatcher = new LibraryWatcher(
+            libraryIndex, List.of(LibraryIndex.MUSIC_DIR), this::applyLibraryChange);
+    private MediaGrid mediaLayout;
     private PlaybackListener playbackListener;
     private final ExecutorService executor = Executors.newFixedThreadPool(3);
-    private static final Dotenv dotenv = Dotenv.load();
-    public static int searchPage = 1;
-    public static int allPage;
-    public static String currentQuery = "null";
+    private final AtomicLong searchGeneration = new AtomicLong();
+    private final AtomicLong cancelledSearches = new AtomicLong();
+    private final AtomicLong discardedSearches = new AtomicLong();
+    private final List<Future<?>> inFlight = new CopyOnWriteArrayList<>();
+    private volatile SearchCursor cursor;
+    private volatile String currentQuery = "null";
+    private final DownloadListener downloadListener = this::onDownloadChanged;
     
-    public SearchEngine(GridPane mediaLayout) {
+    public SearchEngine(MediaGrid mediaLayout) {
         this.mediaLayout = mediaLayout;
-        results.addListener((Observable obs) -> updateMediaLayout());
+        mediaLayout.setCellFactory(this::createCell);
+        // содержимое списка сетка отслеживает сама; здесь только смена экземпляра при новом поиске
+        results.addListener((obs, oldList, newList) -> {
+            if (newList != oldList) updateMediaLayout();
+        });
+        updateMediaLayout();
         searchEventListener();
+        libraryWatcher.start();
+        DownloadManager.getInstance().addListener(downloadListener);
     }
 
-    public SearchEngine(GridPane mediaLayout, PlaybackListener playbackListener) {
+    public SearchEngine(MediaGrid mediaLayout, PlaybackListener playbackListener) {
         this.mediaLayout = mediaLayout;
         this.playbackListener = playbackListener;
-        results.addListener((Observable obs) -> updateMediaLayout());
+        mediaLayout.setCellFactory(this::createCell);
+        results.addListener((obs, oldList, newList) -> {
+            if (newList != oldList) updateMediaLayout();
+        });
+        updateMediaLayout();
         searchEventListener();
+        libraryWatcher.start();
+        DownloadManager.getInstance().addListener(downloadListener);
     }
 
     public void setPlaybackListener(PlaybackListener playbackListener) {
@@ -73,78 +91,115 @@ public class SearchEngine {
 
     public void search(String query) {
         currentQuery = query;
-        results.clear();
-        executor.submit(() -> {
-            try {
-                String searchUrl = "https://" +
-                    dotenv.get("URL_SOURCE") +
-                    "/search?q=" + query;
-                Document doc = Jsoup.connect(searchUrl)
-                        .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64)")
-                        .timeout(5000)
-                        .maxBodySize(0) 
-                        .get();
-
-                Elements tracks = doc.select("li.tracks__item.track.mustoggler");
-                Elements pages = doc.select(".pagination__item");
-                allPage = pages.size();
-                List<MediaModel> newModels = new ArrayList<>();
-
-                for (Element track : tracks) {
-                    String musmeta = track.attr("data-musmeta");
-                    if (musmeta == null || musmeta.isEmpty()) continue;
-
-                    JsonObject obj = JsonParser.parseString(musmeta).getAsJsonObject();
-                    String artist = obj.get("artist").getAsString();
-                    String title = obj.get("title").getAsString();
-                    String imageUrl = obj.get("img").getAsString();
-                    String downloadUrl = obj.get("url").getAsString();
-                    String time = track.selectFirst("div.track__fulltime") != null
-                            ? track.selectFirst("div.track__fulltime").text()
-                            : "Unknown";
-                    boolean isDownloaded = false;
-                    if(LocalFiles.stream().anyMatch(m -> m.getTitle().equals(artist + " - " + title))) {
-                        isDownloaded = true;
-                    }
-                    MediaModel model = new MediaModel(artist + " - " + title, time, downloadUrl, imageUrl, isDownloaded);
-                    newModels.add(model);
-                }
+        long gen = newGeneration();
+        startScan();
+        resetResults();
 
-                Platform.runLater(() -> {
-                    results.setAll(newModels);
-                });
-                tracks.clear();
-                doc.clearAttributes();
+        SearchCursor searchCursor = new SearchCursor(gen, offset -> loadPageAsync(query, offset, gen));
+        cursor = searchCursor;
 
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        SearchPage cached = searchService.peekCached(query, 0);
+        if (cached != null) {
+            searchCursor.setPageCount(cached.getPageCount());
+            results.setAll(cached.getTracks());
+            prefetchTopResult(cached.getTracks());
+            return;
+        }
+
+        // первая страница показывается порциями по мере загрузки; в конце добавляется то, что ещё не показано
+        int[] shown = {0};
+        Consumer<List<MediaModel>> onPartial = partial -> Platform.runLater(() -> {
+            if (!isCurrent(gen)) return;
+            results.addAll(partial);
+            shown[0] += partial.size();
         });
+
+        loadPageAsync(query, 0, gen, onPartial).whenComplete((page, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                reportFailure(error, gen);
+                return;
+            }
+            if (!isCurrent(gen)) {
+                discardedSearches.incrementAndGet();
+                return;
+            }
+            searchCursor.setPageCount(page.getPageCount());
+            List<MediaModel> tracks = page.getTracks();
+            if (shown[0] < tracks.size()) results.addAll(tracks.subList(shown[0], tracks.size()));
+            prefetchTopResult(tracks);
+        }));
+    }
+
+    // первый результат чаще всего включают сразу — его начало подгружается заранее
+    private void prefetchTopResult(List<MediaModel> tracks) {
+        if (!tracks.isEmpty()) AudioPrefetcher.getInstance().prefetch(tracks.get(0).getUrl());
+    }
+
+    private CompletableFuture<SearchPage> loadPageAsync(String query, int offset, long gen) {
+        return loadPageAsync(query, offset, gen, null);
+    }
+
+    private CompletableFuture<SearchPage> loadPageAsync(String query, int offset, long gen,
+                                                       Consumer<List<MediaModel>> onPartial) {
+        CompletableFuture<SearchPage> future = searchService.fetchPage(query, offset, () -> !isCurrent(gen), onPartial);
+        inFlight.removeIf(Future::isDone);
+        inFlight.add(future);
+        return future;
+    }
+
+    private void reportFailure(Throwable error, long gen) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        // отменённый или устаревший поиск — результат никому не нужен
+        if (cause instanceof CancellationException || !isCurrent(gen)) return;
+        System.err.println("Search failed: " + cause.getMessage() + " [" + searchService.getStats() + "]");
+    }
+
+    /**
+     * Каждый новый поиск (или Home) получает новое поколение: незавершённые запросы старых поколений
+     * отменяются, а их результаты отбрасываются, не доходя до FX-потока.
+     */
+    private long newGeneration() {
+        long gen = searchGeneration.incrementAndGet();
+        for (Future<?> future : inFlight) {
+            if (future.cancel(true)) cancelledSearches.incrementAndGet();
+        }
+        inFlight.clear();
+        return gen;
+    }
+
+    private boolean isCurrent(long gen) {
+        return searchGeneration.get() == gen;
+    }
+
+    public long getCancelledSearches() {
+        return cancelledSearches.get();
+    }
+
+    public long getDiscardedSearches() {
+        return discardedSearches.get();
     }
 
     private void updateMediaLayout() {
-        mediaLayout.getChildren().clear();
-        int columnsCount = 5;
-        for (int i = 0; i < results.size(); i++) {
-            MediaModel model = results.get(i);
-            MediaWidget widget = new MediaWidget(model, playbackListener, new DataUpdateListener() {
-                @Override
-                public void onDataChanged() {
-                    goHome();
-                }
-            });
-            
-            if (currentTrackListener != null) {
+        mediaLayout.setItems(results.get());
+    }
+
+    // ячейка сетки переиспользуется для разных треков, поэтому удаляется тот, что показан в ней сейчас
+    private MediaWidget createCell(MediaModel model, List<MediaModel> items, int index) {
+        MediaWidget[] cell = new MediaWidget[1];
+        cell[0] = new MediaWidget(model, playbackListener, new DataUpdateListener() {
+            @Override
+            public void onDataChanged() {
+                onTrackDeleted(cell[0].getModel());
             }
-            
-            int column = i % columnsCount;
-            int row = i / columnsCount;
-            mediaLayout.add(widget, column, row);
-        }
+        }, items, index);
+        return cell[0];
     }
     
     public void shutdown() {
         executor.shutdown();
+        searchService.shutdown();
+        libraryWatcher.stop();
+        DownloadManager.getInstance().removeListener(downloadListener);
     }
 
     public void setCurrentTrackListener(CurrentTrackListener listener) {
@@ -152,81 +207,127 @@ public class SearchEngine {
     }
     public void goHome() {
         currentQuery = "null";
-        results.clear();
-        File homeDir = new File(System.getProperty("user.home"), "Music");
-        File[] files = homeDir.listFiles((dir, name) -> name.endsWith(".mp3") || name.endsWith(".flac"));
-        if (files != null) {
-            for (File file : files) {
-                try {
-                    AudioFile audioFile = AudioFileIO.read(file);
-                    Tag tag = audioFile.getTag();
-                    String artist = tag.getFirst(FieldKey.ARTIST);
-                    String title = tag.getFirst(FieldKey.TITLE);
-                    String duration = String.valueOf(audioFile.getAudioHeader().getTrackLength() / 60) + ":" +
-                            String.format("%02d", audioFile.getAudioHeader().getTrackLength() % 60);
-                    MediaModel model = new MediaModel(artist + " - " + title, duration, file.toURI().toString(), "", true);
-                    LocalFiles.add(model);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-            results.setAll(LocalFiles);
-        }
+        newGeneration();
+        cursor = null;
+        CancellationToken token = startScan();
+        resetResults();
+        executor.submit(() -> {
+            libraryIndex.rescan(LibraryIndex.MUSIC_DIR, token, batch ->
+                Platform.runLater(() -> {
+                    if (!token.isCancelled()) results.addAll(batch);
+                })
+            );
+        });
+    }
+
+    // новая загрузка (поиск или Home) отменяет ещё не завершённое сканирование библиотеки
+    private CancellationToken startScan() {
+        CancellationToken token = new CancellationToken();
+        CancellationToken previous = scanToken;
+        scanToken = token;
+        if (previous != null) previous.cancel();
+        return token;
     }
 
     public void loadMoreResults() {
-        if(searchPage<allPage && !currentQuery.equals("null")){
-            executor.submit(() -> {
-                try {
-                    String searchUrl = "https://" +
-                        dotenv.get("URL_SOURCE") +
-                        "/search/start/" + 48 * searchPage + "?q=" + currentQuery;
-                    System.out.println(searchUrl);
-                    Document doc = Jsoup.connect(searchUrl)
-                            .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64)")
-                            .timeout(5000)
-                            .maxBodySize(0) 
-                            .get();
-                    System.out.println(searchUrl);
-                    Elements tracks = doc.select("li.tracks__item.track.mustoggler");
-                    List<MediaModel> newModels = new ArrayList<>();
-
-                    for (Element track : tracks) {
-                        String musmeta = track.attr("data-musmeta");
-                        if (musmeta == null || musmeta.isEmpty()) continue;
-
-                        JsonObject obj = JsonParser.parseString(musmeta).getAsJsonObject();
-                        String artist = obj.get("artist").getAsString();
-                        String title = obj.get("title").getAsString();
-                        String imageUrl = obj.get("img").getAsString();
-                        String downloadUrl = obj.get("url").getAsString();
-                        String time = track.selectFirst("div.track__fulltime") != null
-                                ? track.selectFirst("div.track__fulltime").text()
-                                : "Unknown";
-                        boolean isDownloaded = false;
-                        if(LocalFiles.stream().anyMatch(m -> m.getTitle().equals(artist + " - " + title))) {
-                            isDownloaded = true;
-                        }
-                        MediaModel model = new MediaModel(artist + " - " + title, time, downloadUrl, imageUrl, isDownloaded);
-                        newModels.add(model);
-                    }
-
-                    Platform.runLater(() -> {
-                        results.addAll(newModels);
-                    });
-                    tracks.clear();
-                    doc.clearAttributes();
-                    searchPage++;
-
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+        SearchCursor searchCursor = cursor;
+        if (searchCursor == null || currentQuery.equals("null")) return;
+        CompletableFuture<SearchPage> next = searchCursor.next();
+        if (next == null) return;
+
+        long gen = searchCursor.getGeneration();
+        next.whenComplete((page, error) -> Platform.runLater(() -> {
+            searchCursor.appended(error == null);
+            if (error != null) {
+                reportFailure(error, gen);
+                return;
+            }
+            if (!isCurrent(gen)) {
+                discardedSearches.incrementAndGet();
+                return;
+            }
+            results.addAll(page.getTracks());
+        }));
+    }
+
+    /**
+     * Предзагрузка следующей страницы, пока пользователь ещё не докрутил до конца.
+     */
+    public void prefetchMoreResults() {
+        SearchCursor searchCursor = cursor;
+        if (searchCursor != null && !currentQuery.equals("null")) searchCursor.prefetch();
+    }
+
+    /**
+     * Скачивает в папку все страницы текущего запроса (на Home — показанные треки),
+     * пропуская то, что уже есть в библиотеке.
+     */
+    public CompletableFuture<BulkDownloadReport> downloadAll(File targetDir) {
+        String query = currentQuery;
+        CompletableFuture<List<MediaModel>> tracks = query.equals("null")
+                ? CompletableFuture.completedFuture(getResults())
+                : searchService.searchAllPages(query);
+        return tracks.thenCompose(list ->
+                new BulkDownload(DownloadManager.getInstance(), libraryIndex, targetDir).start(list));
+    }
+
+    // готовый файл сразу попадает в индекс (теги и обложка читаются один раз),
+    // а совпадающие результаты на экране отмечаются скачанными без перестроения сетки
+    private void onDownloadChanged(DownloadJob job) {
+        if (job.getState() != DownloadJob.State.DONE) return;
+        if (LibraryIndex.isInMusicDir(job.getTarget())) {
+            executor.submit(() -> applyLibraryChange(libraryIndex.applyChanges(List.of(job.getTarget()))));
         }
+
+        MediaModel media = job.getMedia();
+        String[] parts = media.getTitle().split(" - ", 2);
+        String key = parts.length == 2 ? TrackKey.of(parts[0], parts[1]) : null;
+        Platform.runLater(() -> {
+            for (MediaModel model : results) {
+                if (model.isDownloaded()) continue;
+                String[] p = model.getTitle().split(" - ", 2);
+                boolean same = model.getUrl().equals(media.getUrl())
+                        || (key != null && p.length == 2 && key.equals(TrackKey.of(p[0], p[1])));
+                if (!same) continue;
+                MediaWidget widget = mediaLayout.cellFor(model);
+                if (widget != null) widget.markDownloaded();
+                else model.setDownloaded(true);
+            }
+        });
     }
 
     public void onTrackDeleted(MediaModel media) {
-        goHome();
+        results.remove(media);
+        File file;
+        try {
+            file = new File(URI.create(media.getUrl()));
+        } catch (Exception e) {
+            return;
+        }
+        executor.submit(() -> applyLibraryChange(libraryIndex.applyChanges(List.of(file))));
+    }
+
+    // точечно обновляет библиотеку и, если открыт Home, только изменившиеся элементы на экране
+    private void applyLibraryChange(LibraryChange change) {
+        if (change.isEmpty()) return;
+        Platform.runLater(() -> {
+            if (!currentQuery.equals("null")) return;
+            Set<String> removed = new HashSet<>(change.getRemovedUrls());
+            results.removeIf(m -> removed.contains(m.getUrl()));
+            for (MediaModel model : change.getUpdated()) {
+                replaceOrAdd(results, model);
+            }
+        });
+    }
+
+    private static void replaceOrAdd(List<MediaModel> list, MediaModel model) {
+        for (int i = 0; i < list.size(); i++) {
+            if (model.getUrl().equals(list.get(i).getUrl())) {
+                list.set(i, model);
+                return;
+            }
+        }
+        list.add(model);
     }
 
     void findLyrics(String track){
@@ -243,7 +344,14 @@ public class SearchEngine {
         });
     }
 
+    public SearchService getSearchService() {
+        return searchService;
+    }
 
+    // новый экземпляр списка вместо clear(): очередь плеера продолжает ссылаться на прежние результаты
+    private void resetResults() {
+        results.set(FXCollections.observableArrayList());
+    }
 
     public List<MediaModel> getResults() {
         return new ArrayList<>(results.get());
@@ -0,0 +1,104 @@
+package musicsearch.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import musicsearch.models.MediaModel;
+import musicsearch.models.SearchPage;
+
+/**
+ * Потоковый разбор страницы поиска: треки извлекаются по мере чтения HTML, без построения полного DOM.
+ * Обработанные элементы треков удаляются из дерева, так что память не растёт вместе с размером страницы.
+ */
+public class SearchPageParser {
+    private static final String TRACK_SELECTOR = "li.tracks__item.track.mustoggler";
+    private static final int PARTIAL_BATCH = 12;
+
+    /**
+     * @param cancelled проверяется после каждого элемента; при true разбор прерывается CancellationException
+     * @param onPartial получает треки порциями, пока страница ещё загружается (может быть null)
+     */
+    public static SearchPage parse(InputStream in, Charset charset, String baseUri,
+                                   BooleanSupplier cancelled, Consumer<List<MediaModel>> onPartial) throws IOException {
+        List<MediaModel> tracks = new ArrayList<>();
+        int pageCount = 0;
+        int flushed = 0;
+
+        try (StreamParser streamer = new StreamParser(Parser.htmlParser())) {
+            streamer.parse(new InputStreamReader(in, charset), baseUri);
+            Iterator<Element> elements = streamer.iterator();
+            while (elements.hasNext()) {
+                if (cancelled.getAsBoolean()) throw new CancellationException();
+                Element el = elements.next();
+                // элемент отдаётся после закрывающего тега, дочерние — раньше родителя,
+                // поэтому удаляем только то, что уже разобрали
+                if (el.is(TRACK_SELECTOR)) {
+                    MediaModel model = toModel(el);
+                    if (model != null) tracks.add(model);
+                    el.remove();
+                } else if (el.hasClass("pagination__item")) {
+                    pageCount++;
+                    el.remove();
+                }
+
+                if (onPartial != null && tracks.size() - flushed >= PARTIAL_BATCH) {
+                    onPartial.accept(new ArrayList<>(tracks.subList(flushed, tracks.size())));
+                    flushed = tracks.size();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new SearchPage(tracks, pageCount);
+    }
+
+    private static MediaModel toModel(Element track) {
+        String musmeta = track.attr("data-musmeta");
+        if (musmeta == null || musmeta.isEmpty()) return null;
+
+        String artist = null, title = null, imageUrl = null, downloadUrl = null;
+        try (JsonReader reader = new JsonReader(new StringReader(musmeta))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "artist" -> artist = reader.nextString();
+                    case "title" -> title = reader.nextString();
+                    case "img" -> imageUrl = reader.nextString();
+                    case "url" -> downloadUrl = reader.nextString();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Malformed track metadata: " + e.getMessage());
+            return null;
+        }
+        if (artist == null || title == null || downloadUrl == null) return null;
+
+        Element fulltime = track.selectFirst("div.track__fulltime");
+        String time = fulltime != null ? fulltime.text() : "Unknown";
+        return new MediaModel(artist + " - " + title, time, downloadUrl, imageUrl != null ? imageUrl : "", false);
+    }
+}
@@ -0,0 +1,216 @@
+package musicsearch.service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import musicsearch.models.MediaModel;
+import musicsearch.models.RequestStats;
+import musicsearch.models.SearchPage;
+
+/**
+ * Поиск без привязки к UI: загрузка страниц, разбор, кеш и сопоставление с локальной библиотекой.
+ * Все методы асинхронные и потокобезопасные; FX-сетка — лишь один из потребителей результатов.
+ */
+public class SearchService {
+    private static final int THREADS = Config.getInt("SEARCH_THREADS", 3);
+    private static final Duration TIMEOUT = Duration.ofMillis(Config.getLong("SEARCH_TIMEOUT_MS", 5000));
+    private static final int BATCH_PARALLELISM = Config.getInt("SEARCH_BATCH_PARALLELISM", THREADS);
+    private static final int BULK_MAX_PAGES = Config.getInt("BULK_MAX_PAGES", 20);
+    private static final int BULK_THREADS = Config.getInt("BULK_PAGE_THREADS", 1);
+
+    private final LibraryIndex libraryIndex;
+    private final SearchCache searchCache;
+    private final String sourceHost = Config.get("URL_SOURCE", null);
+    private final RequestScheduler scheduler = new RequestScheduler("SEARCH");
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r);
+        t.setName("search-" + t.getId());
+        t.setDaemon(true);
+        return t;
+    });
+    // отдельная полоса для страниц searchAllPages: пачка из десятков страниц не занимает потоки
+    // интерактивного поиска и стоит в своей очереди, пока тот работает
+    private final ExecutorService bulkExecutor = Executors.newFixedThreadPool(BULK_THREADS, r -> {
+        Thread t = new Thread(r);
+        t.setName("search-bulk-" + t.getId());
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public SearchService() {
+        this(new LibraryIndex(), new SearchCache());
+    }
+
+    public SearchService(LibraryIndex libraryIndex, SearchCache searchCache) {
+        this.libraryIndex = libraryIndex;
+        this.searchCache = searchCache;
+    }
+
+    /**
+     * Первая страница результатов по запросу.
+     */
+    public CompletableFuture<List<MediaModel>> search(String query) {
+        return fetchPage(query, 0, () -> false, null).thenApply(SearchPage::getTracks);
+    }
+
+    public CompletableFuture<Map<String, List<MediaModel>>> searchAll(List<String> queries) {
+        return searchAll(queries, BATCH_PARALLELISM);
+    }
+
+    /**
+     * Пакетный поиск: одновременно выполняется не больше parallelism запросов.
+     * Запрос, завершившийся ошибкой, даёт пустой список, чтобы не терять остальные результаты.
+     * Порядок ключей в результате совпадает с порядком запросов.
+     */
+    public CompletableFuture<Map<String, List<MediaModel>>> searchAll(List<String> queries, int parallelism) {
+        int count = queries.size();
+        List<CompletableFuture<List<MediaModel>>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) results.add(new CompletableFuture<>());
+
+        AtomicInteger next = new AtomicInteger();
+        Runnable launchNext = new Runnable() {
+            @Override
+            public void run() {
+                int i = next.getAndIncrement();
+                if (i >= count) return;
+                search(queries.get(i)).whenComplete((tracks, error) -> {
+                    if (error != null) {
+                        System.err.println("Search failed for '" + queries.get(i) + "': " + error.getMessage());
+                        results.get(i).complete(List.of());
+                    } else {
+                        results.get(i).complete(tracks);
+                    }
+                    run();
+                });
+            }
+        };
+        for (int i = 0; i < Math.min(Math.max(parallelism, 1), count); i++) launchNext.run();
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<String, List<MediaModel>> byQuery = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) byQuery.put(queries.get(i), results.get(i).join());
+            return byQuery;
+        });
+    }
+
+    /**
+     * Все страницы запроса (не больше BULK_MAX_PAGES) одним списком в порядке выдачи, без повторов.
+     * Страница, загрузка которой не удалась, пропускается. Страницы после первой грузятся в фоновой
+     * полосе BULK_PAGE_THREADS и не задерживают обычный поиск.
+     */
+    public CompletableFuture<List<MediaModel>> searchAllPages(String query) {
+        return fetchPage(query, 0, () -> false, null).thenCompose(first -> {
+            int pages = Math.min(Math.max(first.getPageCount(), 1), BULK_MAX_PAGES);
+            List<CompletableFuture<List<MediaModel>>> rest = new ArrayList<>();
+            for (int p = 1; p < pages; p++) {
+                int page = p;
+                rest.add(fetchPage(query, page * SearchCursor.PAGE_SIZE, () -> false, null, bulkExecutor)
+                        .thenApply(SearchPage::getTracks)
+                        .exceptionally(e -> {
+                            System.err.println("Page " + page + " of '" + query + "' failed: " + e.getMessage());
+                            return List.of();
+                        }));
+            }
+            return CompletableFuture.allOf(rest.toArray(new CompletableFuture[0])).thenApply(v -> {
+                Map<String, MediaModel> byUrl = new LinkedHashMap<>();
+                for (MediaModel m : first.getTracks()) byUrl.putIfAbsent(m.getUrl(), m);
+                for (CompletableFuture<List<MediaModel>> page : rest) {
+                    for (MediaModel m : page.join()) byUrl.putIfAbsent(m.getUrl(), m);
+                }
+                return new ArrayList<>(byUrl.values());
+            });
+        });
+    }
+
+    /**
+     * Страница из кеша памяти без обращения к сети или диску, либо null.
+     */
+    public SearchPage peekCached(String query, int offset) {
+        SearchPage page = searchCache.peek(query, offset);
+        return page == null ? null : new SearchPage(withDownloadFlags(page.getTracks()), page.getPageCount());
+    }
+
+    /**
+     * @param cancelled проверяется во время разбора; при true future завершается CancellationException
+     * @param onPartial получает треки порциями, пока страница ещё загружается (может быть null)
+     */
+    public CompletableFuture<SearchPage> fetchPage(String query, int offset, BooleanSupplier cancelled,
+                                                   Consumer<List<MediaModel>> onPartial) {
+        return fetchPage(query, offset, cancelled, onPartial, executor);
+    }
+
+    private CompletableFuture<SearchPage> fetchPage(String query, int offset, BooleanSupplier cancelled,
+                                                    Consumer<List<MediaModel>> onPartial, Executor lane) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadPage(query, offset, cancelled, onPartial);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, lane);
+    }
+
+    /**
+     * Счётчики планировщика запросов к источнику: ожидали в очереди, повторены, отброшены.
+     */
+    public RequestStats getStats() {
+        return scheduler.getStats();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        bulkExecutor.shutdown();
+    }
+
+    // страница из кеша (память/диск) или из сети; флаг "скачано" всегда пересчитывается по текущей библиотеке
+    private SearchPage loadPage(String query, int offset, BooleanSupplier cancelled,
+                                Consumer<List<MediaModel>> onPartial) throws IOException {
+        SearchPage page = searchCache.get(query, offset);
+        if (page == null) {
+            Consumer<List<MediaModel>> flagged = onPartial == null ? null
+                    : partial -> onPartial.accept(withDownloadFlags(partial));
+            page = download(query, offset, cancelled, flagged);
+            searchCache.put(query, offset, page);
+        }
+        return new SearchPage(withDownloadFlags(page.getTracks()), page.getPageCount());
+    }
+
+    private SearchPage download(String query, int offset, BooleanSupplier cancelled,
+                                Consumer<List<MediaModel>> onPartial) throws IOException {
+        String searchUrl = searchUrl(sourceHost, query, offset);
+        try (HttpService.StreamResponse response = scheduler.open(searchUrl, TIMEOUT, Map.of(), cancelled)) {
+            return SearchPageParser.parse(response.body(), response.charset(), searchUrl, cancelled, onPartial);
+        }
+    }
+
+    // запрос кодируется: пробелы и символы вроде # или | в URI недопустимы
+    static String searchUrl(String host, String query, int offset) {
+        return "https://" + host + (offset == 0 ? "/search?q=" : "/search/start/" + offset + "?q=")
+                + URLEncoder.encode(query, StandardCharsets.UTF_8);
+    }
+
+    // копии моделей, чтобы изменения в виджетах не попадали в кеш
+    private List<MediaModel> withDownloadFlags(List<MediaModel> tracks) {
+        List<MediaModel> copies = new ArrayList<>(tracks.size());
+        for (MediaModel m : tracks) {
+            copies.add(new MediaModel(m.getTitle(), m.getTime(), m.getUrl(), m.getImageUrl(),
+                    libraryIndex.isDownloaded(m)));
+        }
+        return copies;
+    }
+}
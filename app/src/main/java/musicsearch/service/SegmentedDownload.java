@@ -0,0 +1,348 @@
+package musicsearch.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Загрузка одного файла несколькими Range-запросами параллельно.
+ * Файл заранее выделяется целиком, каждый сегмент пишет в свою позицию через FileChannel.
+ * Число сегментов растёт, пока это заметно увеличивает общую скорость (не больше DOWNLOAD_SEGMENTS);
+ * освободившийся поток забирает половину самого большого оставшегося диапазона.
+ */
+class SegmentedDownload implements Closeable {
+    private static final int MAX_SEGMENTS = Config.getInt("DOWNLOAD_SEGMENTS", 4);
+    private static final long MIN_SIZE = Config.getLong("DOWNLOAD_SEGMENT_MIN_SIZE", 8L * 1024 * 1024);
+    // не делим диапазоны мельче: иначе накладные расходы на запрос съедают выигрыш
+    private static final long MIN_SPLIT = 1024 * 1024;
+    private static final long TICK_MS = 250;
+    private static final long GROW_INTERVAL_MS = 1000;
+    private static final long SAVE_INTERVAL_MS = 1000;
+    private static final double GROW_GAIN = 1.15;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    private static class Segment {
+        long pos;
+        long end;
+
+        Segment(long pos, long end) {
+            this.pos = pos;
+            this.end = end;
+        }
+    }
+
+    private final DownloadJob job;
+    private final PartFile partFile;
+    private final String url;
+    private final String etag;
+    private final long total;
+    private final Duration timeout;
+    private final AtomicLong bytesCounter;
+    private final ExecutorService executor;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Set<HttpService.StreamResponse> open = ConcurrentHashMap.newKeySet();
+    private final AtomicLong written = new AtomicLong();
+    private int active = 0;
+    private IOException failure;
+    private volatile boolean stale = false;
+    private FileChannel channel;
+
+    SegmentedDownload(DownloadJob job, PartFile partFile, String url, String etag, long total,
+                      Duration timeout, AtomicLong bytesCounter, ExecutorService executor) {
+        this.job = job;
+        this.partFile = partFile;
+        this.url = url;
+        this.etag = etag;
+        this.total = total;
+        this.timeout = timeout;
+        this.bytesCounter = bytesCounter;
+        this.executor = executor;
+    }
+
+    /**
+     * Сегментный режим включён, файл достаточно большой и сервер принимает Range.
+     */
+    static boolean supports(HttpService.StreamResponse response, long total) {
+        return MAX_SEGMENTS > 1 && total >= MIN_SIZE
+                && "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+    }
+
+    /**
+     * Новая загрузка: первый сегмент дочитывает уже открытый ответ с начала файла.
+     */
+    void start(HttpService.StreamResponse first) throws IOException {
+        Segment head = new Segment(0, total);
+        segments.add(head);
+        run(Map.of(head, first));
+    }
+
+    /**
+     * Докачка по диапазонам, сохранённым в sidecar.
+     */
+    void resume(long[][] ranges) throws IOException {
+        Map<Segment, HttpService.StreamResponse> initial = new HashMap<>();
+        for (long[] range : ranges) {
+            Segment segment = new Segment(range[0], range[1]);
+            segments.add(segment);
+            initial.put(segment, null);
+        }
+        run(initial);
+    }
+
+    private void run(Map<Segment, HttpService.StreamResponse> initial) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(partFile.getPart().toFile(), "rw")) {
+            if (file.length() != total) file.setLength(total);
+            channel = file.getChannel();
+            written.set(total - remaining());
+            job.setTotal(total);
+            job.setTransferred(written.get());
+            job.setActiveResponse(this);
+            save();
+
+            int target = Math.min(Math.max(2, initial.size()), MAX_SEGMENTS);
+            initial.forEach(this::spawn);
+            coordinate(target);
+            close();
+            awaitWorkers();
+
+            if (failure != null || job.isCancelRequested() || job.isPauseRequested()) {
+                save();
+                throw failure != null ? failure : new IOException("Interrupted");
+            }
+            if (remaining() != 0) throw new IOException("Segments did not cover the whole file");
+        } finally {
+            if (stale) partFile.discard();
+        }
+    }
+
+    // следит за скоростью, добавляет сегменты и периодически сохраняет прогресс в sidecar
+    private void coordinate(int target) {
+        long lastGrow = System.nanoTime();
+        long lastSave = lastGrow;
+        long grownAtBytes = written.get();
+        double rateBeforeGrow = 0;
+        boolean growing = true;
+
+        while (true) {
+            synchronized (this) {
+                if (active == 0 || failure != null) return;
+                try {
+                    wait(TICK_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (failure != null) return;
+            }
+            if (job.isCancelRequested() || job.isPauseRequested()) return;
+
+            long now = System.nanoTime();
+            if (growing && now - lastGrow >= GROW_INTERVAL_MS * 1_000_000) {
+                double rate = (written.get() - grownAtBytes) / ((now - lastGrow) / 1e9);
+                if (rateBeforeGrow == 0 || rate >= rateBeforeGrow * GROW_GAIN) {
+                    if (target < MAX_SEGMENTS) target++;
+                    else growing = false;
+                    rateBeforeGrow = rate;
+                } else {
+                    // прирост скорости от последнего сегмента мал — сеть уже загружена
+                    growing = false;
+                }
+                lastGrow = now;
+                grownAtBytes = written.get();
+            }
+            fillTo(target);
+
+            if (now - lastSave >= SAVE_INTERVAL_MS * 1_000_000) {
+                save();
+                lastSave = now;
+            }
+        }
+    }
+
+    // новый сегмент — только при свободном соединении с хостом: лимит HTTP_MAX_PER_HOST общий для всех загрузок,
+    // и ожидающие разрешения сегменты одной загрузки отнимали бы соединения у остальных
+    private void fillTo(int target) {
+        while (activeCount() < target && HttpService.availablePermits(url) > 0) {
+            Segment split = split();
+            if (split == null) return;
+            spawn(split, null);
+        }
+    }
+
+    // отдаёт вторую половину самого большого оставшегося диапазона новому сегменту
+    private Segment split() {
+        synchronized (segments) {
+            Segment largest = null;
+            long largestRemaining = 0;
+            for (Segment segment : segments) {
+                long left;
+                synchronized (segment) {
+                    left = segment.end - segment.pos;
+                }
+                if (left > largestRemaining) {
+                    largest = segment;
+                    largestRemaining = left;
+                }
+            }
+            if (largest == null || largestRemaining < 2 * MIN_SPLIT) return null;
+            Segment tail;
+            synchronized (largest) {
+                long mid = largest.pos + (largest.end - largest.pos) / 2;
+                tail = new Segment(mid, largest.end);
+                largest.end = mid;
+            }
+            segments.add(tail);
+            return tail;
+        }
+    }
+
+    private void spawn(Segment segment, HttpService.StreamResponse response) {
+        synchronized (this) {
+            active++;
+        }
+        executor.submit(() -> {
+            try {
+                fetch(segment, response);
+            } catch (IOException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new IOException(e));
+            } finally {
+                synchronized (this) {
+                    active--;
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    private void fetch(Segment segment, HttpService.StreamResponse response) throws IOException {
+        if (response == null) {
+            long start, end;
+            synchronized (segment) {
+                start = segment.pos;
+                end = segment.end;
+            }
+            if (start >= end) return;
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Accept-Encoding", "identity");
+            headers.put("Range", "bytes=" + start + "-" + (end - 1));
+            if (etag != null && !etag.startsWith("W/")) headers.put("If-Range", etag);
+            response = HttpService.open(url, timeout, headers, this::isAbandoned);
+            if (response.statusCode() != 206) {
+                // 200 на If-Range означает, что файл на сервере изменился — сохранённые сегменты бесполезны
+                if (response.isSuccessful()) stale = true;
+                response.close();
+                throw new IOException("Server ignored range request (HTTP " + response.statusCode() + ")");
+            }
+            long[] range = DownloadManager.parseContentRange(response.header("Content-Range"));
+            if (range[0] != start || (range[1] >= 0 && range[1] != total)) {
+                // другая длина — файл на сервере изменился; другое начало писать в позицию сегмента нельзя
+                if (range[1] >= 0 && range[1] != total) stale = true;
+                response.close();
+                throw new IOException("Server returned a different range: " + response.header("Content-Range"));
+            }
+        }
+
+        open.add(response);
+        try (InputStream in = response.body()) {
+            byte[] buffer = BUFFER.get();
+            while (true) {
+                if (job.isCancelRequested() || job.isPauseRequested()) throw new IOException("Interrupted");
+                long pos, left;
+                synchronized (segment) {
+                    pos = segment.pos;
+                    left = segment.end - segment.pos;
+                }
+                if (left <= 0) return;
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                if (read == -1) throw new IOException("Connection closed " + left + " bytes before segment end");
+
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                long at = pos;
+                while (chunk.hasRemaining()) at += channel.write(chunk, at);
+                synchronized (segment) {
+                    segment.pos += read;
+                }
+                job.setTransferred(written.addAndGet(read));
+                bytesCounter.addAndGet(read);
+            }
+        } finally {
+            open.remove(response);
+        }
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null && !job.isCancelRequested() && !job.isPauseRequested()) failure = e;
+        notifyAll();
+        close();
+    }
+
+    private synchronized boolean isAbandoned() {
+        return failure != null || job.isCancelRequested() || job.isPauseRequested();
+    }
+
+    private synchronized int activeCount() {
+        return active;
+    }
+
+    private synchronized void awaitWorkers() {
+        while (active > 0) {
+            try {
+                wait(TICK_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private long remaining() {
+        long left = 0;
+        for (long[] range : ranges()) left += range[1] - range[0];
+        return left;
+    }
+
+    private long[][] ranges() {
+        List<long[]> result = new ArrayList<>();
+        synchronized (segments) {
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    if (segment.pos < segment.end) result.add(new long[]{segment.pos, segment.end});
+                }
+            }
+        }
+        return result.toArray(new long[0][]);
+    }
+
+    private void save() {
+        try {
+            partFile.writeMeta(url, etag, total, ranges());
+        } catch (IOException e) {
+            System.err.println("Could not save download progress: " + e.getMessage());
+        }
+    }
+
+    // закрывает все открытые ответы; вызывается при паузе, отмене и ошибке одного из сегментов
+    @Override
+    public void close() {
+        for (HttpService.StreamResponse response : open) {
+            try {
+                response.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package musicsearch.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Локальный HTTP-сервер на 127.0.0.1 для треков с подгруженным началом: отдаёт плееру начало из памяти,
+ * а остаток — Range-запросом к исходному серверу, который открывается параллельно с отдачей начала.
+ * Range-запросы самого плеера (перемотка) поддерживаются. Начало закрепляется при регистрации, поэтому
+ * вытеснение из AudioPrefetcher не ломает перемотку играющего трека; если начала нет нигде, запрос плеера
+ * передаётся исходному серверу как есть. Когда плеер читает файл целиком, отданные байты заодно пишутся
+ * в AudioCache — отдельная докачка в кеш заняла бы второе соединение с тем же хостом.
+ */
+class StreamProxy {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    // начала нужны текущему и заранее подготовленному плееру; более старые отпускаются
+    private static final int MAX_PINNED = 4;
+
+    private final AudioPrefetcher prefetcher;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, String> routes = new ConcurrentHashMap<>();
+    private final Map<String, String> idsByUrl = new ConcurrentHashMap<>();
+    private final Map<String, AudioPrefetcher.Head> pinned = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AudioPrefetcher.Head> eldest) {
+            return size() > MAX_PINNED;
+        }
+    };
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private StreamProxy(AudioPrefetcher prefetcher, HttpServer server, ExecutorService executor) {
+        this.prefetcher = prefetcher;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    static StreamProxy start(AudioPrefetcher prefetcher) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r);
+            t.setName("stream-proxy");
+            t.setDaemon(true);
+            return t;
+        });
+        StreamProxy proxy = new StreamProxy(prefetcher, server, executor);
+        server.createContext("/stream/", proxy::handle);
+        server.setExecutor(executor);
+        server.start();
+        return proxy;
+    }
+
+    /**
+     * Локальный URL для трека; расширение исходного URL сохраняется, по нему плеер определяет формат.
+     */
+    String register(String url, AudioPrefetcher.Head head) {
+        synchronized (pinned) {
+            pinned.put(url, head);
+        }
+        String id = idsByUrl.computeIfAbsent(url, u -> {
+            String newId = Integer.toString(nextId.incrementAndGet());
+            routes.put(newId, u);
+            return newId;
+        });
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/stream/" + id + "/track" + extension(url);
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            String url = path.length > 2 ? routes.get(path[2]) : null;
+            if (url == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            AudioPrefetcher.Head head = head(url);
+            if (head == null) {
+                passThrough(exchange, url);
+                return;
+            }
+
+            long total = head.total;
+            long[] range = parseRange(exchange.getRequestHeaders().getFirst("Range"), total);
+            if (range == null) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + total);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            boolean partial = exchange.getRequestHeaders().containsKey("Range");
+            long start = range[0];
+            long end = range[1];
+            if (head.contentType != null) exchange.getResponseHeaders().set("Content-Type", head.contentType);
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            if (partial) exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + total);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", Long.toString(end - start + 1));
+                exchange.sendResponseHeaders(partial ? 206 : 200, -1);
+                return;
+            }
+
+            // остаток запрашивается сразу, пока плеер получает начало из памяти
+            long restFrom = Math.max(start, head.data.length);
+            CompletableFuture<HttpService.StreamResponse> rest = restFrom <= end
+                    ? CompletableFuture.supplyAsync(() -> openRest(url, head, restFrom, end), executor)
+                    : null;
+            AudioCache.Fill fill = start == 0 && end == total - 1 ? AudioCache.getInstance().beginFill(url, total) : null;
+
+            exchange.sendResponseHeaders(partial ? 206 : 200, end - start + 1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (start < head.data.length) {
+                    int to = (int) Math.min(head.data.length, end + 1);
+                    out.write(head.data, (int) start, to - (int) start);
+                    out.flush();
+                    if (fill != null) fill.write(head.data, (int) start, to - (int) start);
+                }
+                if (rest != null) {
+                    try (HttpService.StreamResponse response = rest.join(); InputStream in = response.body()) {
+                        copy(in, out, end - restFrom + 1, fill);
+                    }
+                }
+                if (fill != null) fill.complete();
+            } finally {
+                // плеер мог закрыть соединение раньше (перемотка, стоп) — незабранный ответ тоже закрываем
+                if (rest != null) rest.thenAccept(StreamProxy::closeQuietly);
+                if (fill != null) fill.abort();
+            }
+        } catch (IOException | RuntimeException e) {
+            // обрыв со стороны плеера при перемотке или остановке — обычная ситуация
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private AudioPrefetcher.Head head(String url) {
+        synchronized (pinned) {
+            AudioPrefetcher.Head head = pinned.get(url);
+            if (head != null) return head;
+        }
+        return prefetcher.head(url);
+    }
+
+    // начала уже нет в памяти — плеер получает ответ исходного сервера как есть
+    private void passThrough(HttpExchange exchange, String url) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "identity");
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) headers.put("Range", range);
+        try (HttpService.StreamResponse response = HttpService.open(url, TIMEOUT, headers)) {
+            for (String name : new String[]{"Content-Type", "Content-Range", "Accept-Ranges"}) {
+                String value = response.header(name);
+                if (value != null) exchange.getResponseHeaders().set(name, value);
+            }
+            long length = response.contentLength();
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                if (length >= 0) exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+                exchange.sendResponseHeaders(response.statusCode(), -1);
+                return;
+            }
+            // 0 — длина неизвестна, ответ уходит частями
+            exchange.sendResponseHeaders(response.statusCode(), Math.max(length, 0));
+            try (OutputStream out = exchange.getResponseBody(); InputStream in = response.body()) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    private HttpService.StreamResponse openRest(String url, AudioPrefetcher.Head head, long from, long to) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "identity");
+        headers.put("Range", "bytes=" + from + "-" + to);
+        if (head.etag != null && !head.etag.startsWith("W/")) headers.put("If-Range", head.etag);
+        try {
+            HttpService.StreamResponse response = HttpService.open(url, TIMEOUT, headers);
+            if (response.statusCode() != 206) {
+                response.close();
+                // файл на сервере изменился или Range не поддерживается — начало в памяти устарело
+                prefetcher.invalidate(url);
+                synchronized (pinned) {
+                    pinned.remove(url);
+                }
+                throw new IOException("Upstream ignored range request (HTTP " + response.statusCode() + ")");
+            }
+            return response;
+        } catch (IOException e) {
+            System.err.println("Prefetched stream failed for " + url + ": " + e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // fill (может быть null) получает те же байты, что и плеер
+    private static void copy(InputStream in, OutputStream out, long length, AudioCache.Fill fill) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long left = length;
+        while (left > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+            if (read == -1) throw new IOException("Upstream closed " + left + " bytes early");
+            out.write(buffer, 0, read);
+            if (fill != null) fill.write(buffer, 0, read);
+            left -= read;
+        }
+    }
+
+    // "bytes=S-", "bytes=S-E" или "bytes=-N"; без заголовка — весь файл; null — диапазон вне файла
+    static long[] parseRange(String value, long total) {
+        if (value == null || !value.startsWith("bytes=") || value.indexOf(',') >= 0) return new long[]{0, total - 1};
+        try {
+            String spec = value.substring(6).trim();
+            int dash = spec.indexOf('-');
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long start, end;
+            if (from.isEmpty()) {
+                start = Math.max(0, total - Long.parseLong(to));
+                end = total - 1;
+            } else {
+                start = Long.parseLong(from);
+                end = to.isEmpty() ? total - 1 : Math.min(Long.parseLong(to), total - 1);
+            }
+            return start <= end && start < total ? new long[]{start, end} : null;
+        } catch (RuntimeException e) {
+            return new long[]{0, total - 1};
+        }
+    }
+
+    private static String extension(String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return dot > slash && path.length() - dot <= 5 ? path.substring(dot) : ".mp3";
+    }
+
+    private static void closeQuietly(HttpService.StreamResponse response) {
+        try {
+            response.close();
+        } catch (IOException ignored) {}
+    }
+}
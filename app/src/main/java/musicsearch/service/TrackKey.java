@@ -0,0 +1,30 @@
+package musicsearch.service;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализованный ключ "исполнитель - название" для сопоставления треков из поиска с локальными файлами.
+ * Игнорирует регистр, лишние пробелы и указания на приглашённых исполнителей (feat./ft./featuring).
+ */
+public final class TrackKey {
+    private static final Pattern BRACKETED_FEAT = Pattern.compile(
+            "[(\\[]\\s*(?:feat|ft|featuring)\\b\\.?[^)\\]]*[)\\]]", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRAILING_FEAT = Pattern.compile(
+            "\\s+(?:feat\\.|ft\\.|(?:feat|ft|featuring)\\s).*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s\\u00A0]+");
+
+    private TrackKey() {}
+
+    public static String of(String artist, String title) {
+        return normalize(artist) + " - " + normalize(title);
+    }
+
+    static String normalize(String part) {
+        if (part == null) return "";
+        String s = BRACKETED_FEAT.matcher(part).replaceAll(" ");
+        s = TRAILING_FEAT.matcher(s).replaceAll("");
+        s = s.replace('\u2019', '\'').toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(s).replaceAll(" ").trim();
+    }
+}
@@ -3,6 +3,7 @@ package musicsearch.widgets;
 import java.util.ArrayList;
 import java.util.List;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -19,7 +20,11 @@ import javafx.stage.Window;
 import javafx.util.Duration;
 import musicsearch.models.CurrentTrackListener;
 import musicsearch.models.MediaModel;
+import musicsearch.service.AudioCache;
+import musicsearch.service.Config;
 import musicsearch.service.FileEngine;
+import musicsearch.service.PlaybackMetrics;
+import musicsearch.service.PlaybackQueue;
 
 public class AudioPlayer extends HBox {
     private final List<CurrentTrackListener> currentTrackListeners = new ArrayList<>();
@@ -32,18 +37,39 @@ public class AudioPlayer extends HBox {
     private Label timeLabel;
     private SearchWidget searchWidget;
     private Button playButton, pauseButton, stopButton, downloadButton,
-        prevButton, nextButton;
+        prevButton, nextButton, shuffleButton, repeatButton;
     private Slider volumeSlider;
-    private List<MediaModel> playlist = new ArrayList<>();
-    private int currentIndex = -1;
+    private final PlaybackQueue queue = new PlaybackQueue();
     private ListView<MediaWidget> playlistView;
-
-    private enum RepeatMode { NONE, ONE, ALL }
-    //TODO: Implement repeat modes
-    private RepeatMode repeatMode = RepeatMode.NONE;
-    private boolean shuffle = false;
     
     private FileEngine fileEngine;
+    private final AudioCache audioCache = AudioCache.getInstance();
+
+    // следующий трек готовится заранее, чтобы переход между треками был без паузы
+    private static final double PRELOAD_SECONDS = Config.getInt("GAPLESS_PRELOAD_SEC", 10);
+    private MediaPlayer preloadedPlayer;
+    private MediaModel preloadedModel;
+    private PlaybackMetrics.Source preloadedSource;
+
+    private final PlaybackMetrics metrics = new PlaybackMetrics();
+    private PlaybackMetrics.Attempt attempt;
+    private long lastTransitionMillis = -1;
+
+    // прогресс обновляется по импульсам отрисовки, не чаще PLAYER_UI_FPS раз в секунду
+    private static final long PROGRESS_INTERVAL_NS = 1_000_000_000L / Math.max(1, Config.getInt("PLAYER_UI_FPS", 10));
+    private final char[] timeChars = new char[16];
+    private int shownSecond = -1;
+    private int shownTotal = -1;
+    private final AnimationTimer progressTimer = new AnimationTimer() {
+        private long lastPulse = 0;
+
+        @Override
+        public void handle(long now) {
+            if (now - lastPulse < PROGRESS_INTERVAL_NS) return;
+            lastPulse = now;
+            onProgressPulse();
+        }
+    };
 
     public AudioPlayer(Window parentWindow) {
         initializeFileEngine(parentWindow);
@@ -66,56 +92,200 @@ public class AudioPlayer extends HBox {
     }
     
 
+    /**
+     * Делает list очередью воспроизведения. Список не копируется: очередь ссылается на него напрямую.
+     */
     public void setPlaylist(List<MediaModel> list) {
-        playlist.clear();
-        if (list != null) playlist.addAll(list);
-        currentIndex = playlist.isEmpty() ? -1 : 0;
+        discardPreloaded();
+        queue.setSource(list, -1);
     }
 
     public void setPlaylistAndPlay(List<MediaModel> list, int startIndex) {
-        setPlaylist(list);
-        if (startIndex >= 0 && startIndex < playlist.size()) {
-            playAt(startIndex);
-        } else if (!playlist.isEmpty()) {
-            playAt(0);
+        int size = list != null ? list.size() : 0;
+        int index = startIndex >= 0 && startIndex < size ? startIndex : 0;
+        // клик по играющему треку в том же списке — только пауза: очередь и подгруженный следующий трек остаются
+        if (queue.isSource(list) && index < size && list.get(index).equals(currentModel)) {
+            playTrack(currentModel);
+            return;
         }
+        discardPreloaded();
+        MediaModel model = queue.setSource(list, index);
+        if (model != null) select(model);
     }
 
     public void playAt(int index) {
-        if (index < 0 || index >= playlist.size()) return;
-        currentIndex = index;
-        playTrack(playlist.get(currentIndex));
+        MediaModel model = queue.jumpTo(index);
+        if (model != null) start(model);
+    }
+
+    /**
+     * Ставит трек в очередь сразу после текущего; если ничего не играет — запускает его.
+     */
+    public void playNextInQueue(MediaModel model) {
+        if (model == null) return;
+        if (mediaPlayer == null) {
+            playNow(model);
+            return;
+        }
+        queue.insertNext(model);
+        discardPreloaded();
+    }
+
+    /**
+     * Запускает трек сразу, не перестраивая очередь: после него продолжится текущая очередь.
+     */
+    public void playNow(MediaModel model) {
+        if (model == null) return;
+        if (model.equals(currentModel)) {
+            playTrack(model);
+            return;
+        }
+        queue.insertNext(model);
+        discardPreloaded();
+        playNext();
+    }
+
+    // клик по уже играющему треку — пауза/продолжение
+    private void select(MediaModel model) {
+        if (model.equals(currentModel)) playTrack(model);
+        else start(model);
+    }
+
+    // шаг очереди: трек всегда играет с начала, даже если очередь вернула тот же (повтор, "играть следующим")
+    private void start(MediaModel model) {
+        if (model == currentModel && isUsable(mediaPlayer)) {
+            restartCurrent();
+            return;
+        }
+        if (model == preloadedModel && isUsable(preloadedPlayer) && !model.equals(currentModel)) {
+            MediaPlayer warm = preloadedPlayer;
+            preloadedPlayer = null;
+            preloadedModel = null;
+            attempt = metrics.start(preloadedSource, true, System.nanoTime());
+            stop();
+            startPlayer(model, warm);
+            return;
+        }
+        load(model);
+    }
+
+    private void restartCurrent() {
+        mediaPlayer.seek(Duration.ZERO);
+        mediaPlayer.play();
+        isPlaying = true;
+        progressTimer.start();
+    }
+
+    // создаёт плеер следующего трека без воспроизведения: поток подключается и буферизуется заранее
+    private void preloadNext() {
+        MediaModel next = queue.peekNext();
+        if (next == null || next == preloadedModel || next == currentModel) return;
+        discardPreloaded();
+        try {
+            String url = audioCache.resolveForPlayback(next.getUrl());
+            MediaPlayer player = new MediaPlayer(new Media(url));
+            player.setVolume(volumeSlider.getValue() / 100.0);
+            preloadedPlayer = player;
+            preloadedModel = next;
+            preloadedSource = PlaybackMetrics.sourceOf(next.getUrl(), url);
+        } catch (Exception e) {
+            System.err.println("Error preloading next track: " + e.getMessage());
+        }
+    }
+
+    private void discardPreloaded() {
+        if (preloadedPlayer != null) preloadedPlayer.dispose();
+        preloadedPlayer = null;
+        preloadedModel = null;
+    }
+
+    private static boolean isUsable(MediaPlayer player) {
+        return player != null && player.getError() == null
+                && player.getStatus() != MediaPlayer.Status.HALTED
+                && player.getStatus() != MediaPlayer.Status.DISPOSED;
+    }
+
+    // первый onPlaying после запуска трека; повторные (после паузы) не считаются
+    private void endTransition() {
+        if (attempt == null || attempt.getTotalMillis() >= 0) return;
+        attempt.playing();
+        lastTransitionMillis = attempt.getTotalMillis();
+    }
+
+    /**
+     * Длительность последнего перехода между треками (от команды до начала звука), мс, или -1.
+     */
+    public long getLastTransitionMillis() {
+        return lastTransitionMillis;
+    }
+
+    /**
+     * Время до первого звука по этапам и срывы/ошибки воспроизведения по типу источника.
+     */
+    public PlaybackMetrics getMetrics() {
+        return metrics;
     }
 
     public void playNext() {
-        if (playlist.isEmpty()) return;
-        currentIndex++;
-        if (currentIndex >= playlist.size()) {
-            currentIndex = -1;
+        if (queue.isEmpty()) return;
+        MediaModel next = queue.next();
+        if (next == null) {
             stop();
             return;
         }
-        playAt(currentIndex);
+        start(next);
     }
 
     public void playPrevious() {
-        if (playlist.isEmpty()) return;
+        if (queue.isEmpty()) return;
         if (mediaPlayer != null && mediaPlayer.getCurrentTime().toMillis() > 3000) {
             mediaPlayer.seek(Duration.ZERO);
             return;
         }
-        currentIndex--;
-        if (currentIndex < 0) {
-            currentIndex = 0;
-            mediaPlayer.seek(Duration.ZERO);
+        MediaModel previous = queue.previous();
+        if (previous == null) {
+            if (mediaPlayer != null) mediaPlayer.seek(Duration.ZERO);
             return;
         }
-        playAt(currentIndex);
+        start(previous);
+    }
+
+    // трек доиграл: следующий по очереди с учётом режима повтора
+    private void onTrackFinished() {
+        MediaModel next = queue.advance();
+        if (next == null) {
+            stop();
+        } else {
+            start(next);
+        }
+    }
+
+    public void setShuffle(boolean on) {
+        queue.setShuffle(on);
+        discardPreloaded();
+        updateModeButtons();
     }
 
+    public boolean isShuffle() {
+        return queue.isShuffle();
+    }
 
-    public void setShuffle(boolean on) { this.shuffle = on; }
-    public void setRepeatMode(RepeatMode mode) { this.repeatMode = mode; }
+    public void setRepeatMode(PlaybackQueue.RepeatMode mode) {
+        queue.setRepeatMode(mode);
+        discardPreloaded();
+        updateModeButtons();
+    }
+
+    public PlaybackQueue.RepeatMode getRepeatMode() {
+        return queue.getRepeatMode();
+    }
+
+    private void updateModeButtons() {
+        shuffleButton.setOpacity(queue.isShuffle() ? 1.0 : 0.5);
+        PlaybackQueue.RepeatMode mode = queue.getRepeatMode();
+        repeatButton.setText(mode == PlaybackQueue.RepeatMode.ONE ? "🔂" : "🔁");
+        repeatButton.setOpacity(mode == PlaybackQueue.RepeatMode.NONE ? 0.5 : 1.0);
+    }
 
 
     private void initializeUI() {
@@ -136,6 +306,8 @@ public class AudioPlayer extends HBox {
         pauseButton = new Button("⏸");
         stopButton = new Button("⏹");
         downloadButton = new Button("⬇");
+        shuffleButton = new Button("🔀");
+        repeatButton = new Button("🔁");
         
         volumeSlider = new Slider(0, 100, 80);
         volumeSlider.setPrefWidth(100);
@@ -147,10 +319,12 @@ public class AudioPlayer extends HBox {
         downloadButton.setStyle(buttonStyle());
         prevButton.setStyle(buttonStyle());
         nextButton.setStyle(buttonStyle());
+        shuffleButton.setStyle(buttonStyle());
+        repeatButton.setStyle(buttonStyle());
         
         this.getChildren().addAll(
             currentTrack, progressSlider, timeLabel, prevButton, nextButton, 
-            playButton, pauseButton, stopButton, downloadButton, volumeSlider
+            playButton, pauseButton, stopButton, downloadButton, shuffleButton, repeatButton, volumeSlider
         );
 
         playlistView = new ListView<>();
@@ -166,6 +340,7 @@ public class AudioPlayer extends HBox {
             "-fx-padding: 0 5 0 5;"
         );
         updateUI();
+        updateModeButtons();
     }
 
     private void setupEventHandlers() {
@@ -182,6 +357,12 @@ public class AudioPlayer extends HBox {
 
         prevButton.setOnAction(e -> playPrevious());
         nextButton.setOnAction(e -> playNext());
+        shuffleButton.setOnAction(e -> setShuffle(!queue.isShuffle()));
+        repeatButton.setOnAction(e -> setRepeatMode(switch (queue.getRepeatMode()) {
+            case NONE -> PlaybackQueue.RepeatMode.ALL;
+            case ALL -> PlaybackQueue.RepeatMode.ONE;
+            case ONE -> PlaybackQueue.RepeatMode.NONE;
+        }));
 
         volumeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             if (mediaPlayer != null) {
@@ -195,6 +376,7 @@ public class AudioPlayer extends HBox {
                 double seekTime = progressSlider.getValue() / 100.0 * mediaPlayer.getTotalDuration().toMillis();
                 mediaPlayer.seek(Duration.millis(seekTime));
                 isSeeking = false;
+                showTime((int) (seekTime / 1000), totalSeconds());
             }
         });
     }
@@ -232,44 +414,51 @@ public class AudioPlayer extends HBox {
             }
             return;
         }
-        
+        load(model);
+    }
+
+    private void load(MediaModel model) {
+        long clickedAt = System.nanoTime();
         stop();
-        
-        currentModel = model;
-        notifyCurrentTrackChanged(model);
-        
+
+        String url = audioCache.resolveForPlayback(model.getUrl());
+        attempt = metrics.start(PlaybackMetrics.sourceOf(model.getUrl(), url), false, clickedAt);
         try {
-            mediaPlayer = new MediaPlayer(new Media(model.getUrl()));
-            setupMediaPlayerListeners();
-            
-            mediaPlayer.setVolume(volumeSlider.getValue() / 100.0);
-            
-            play();
-            
+            Media media = new Media(url);
+            attempt.mediaCreated();
+            startPlayer(model, new MediaPlayer(media));
         } catch (Exception e) {
+            metrics.failed(attempt.getSource());
             System.err.println("Error creating media player: " + e.getMessage());
             currentTrack.setText("Error: " + e.getMessage());
             updateUI();
         }
     }
 
+    private void startPlayer(MediaModel model, MediaPlayer player) {
+        currentModel = model;
+        notifyCurrentTrackChanged(model);
+
+        mediaPlayer = player;
+        setupMediaPlayerListeners();
+        mediaPlayer.setVolume(volumeSlider.getValue() / 100.0);
+        // заранее подготовленный плеер уже прошёл READY, и onReady для него не сработает
+        if (player.getStatus() == MediaPlayer.Status.READY || player.getStatus() == MediaPlayer.Status.PAUSED) {
+            onPlayerReady();
+        }
+        play();
+    }
+
     private void setupMediaPlayerListeners() {
-        mediaPlayer.setOnReady(() -> {
-            Platform.runLater(() -> {
-                currentTrack.setText(currentModel.getTitle());
-                progressSlider.setValue(0);
-                if (mediaPlayer.getTotalDuration().greaterThan(Duration.ZERO)) {
-                    timeLabel.setText("00:00 / " + formatTime(mediaPlayer.getTotalDuration().toSeconds()));
-                } else {
-                    timeLabel.setText("00:00 / --:--");
-                }
-                updateUI();
-            });
-        });
+        PlaybackMetrics.Source source = attempt != null ? attempt.getSource() : PlaybackMetrics.Source.REMOTE;
+        mediaPlayer.setOnReady(() -> Platform.runLater(this::onPlayerReady));
+        mediaPlayer.setOnStalled(() -> metrics.stalled(source));
         
         mediaPlayer.setOnPlaying(() -> {
             Platform.runLater(() -> {
                 isPlaying = true;
+                endTransition();
+                progressTimer.start();
                 updateUI();
             });
         });
@@ -277,6 +466,7 @@ public class AudioPlayer extends HBox {
         mediaPlayer.setOnPaused(() -> {
             Platform.runLater(() -> {
                 isPlaying = false;
+                progressTimer.stop();
                 updateUI();
             });
         });
@@ -284,12 +474,14 @@ public class AudioPlayer extends HBox {
         mediaPlayer.setOnEndOfMedia(() -> {
             Platform.runLater(() -> {
                 isPlaying = false;
-                playNext();
+                progressTimer.stop();
+                onTrackFinished();
                 updateUI();
             });
         });
         
         mediaPlayer.setOnError(() -> {
+            metrics.failed(source);
             Platform.runLater(() -> {
                 System.err.println("Media error: " + mediaPlayer.getError());
                 isPlaying = false;
@@ -298,33 +490,64 @@ public class AudioPlayer extends HBox {
             });
         });
         
-        mediaPlayer.currentTimeProperty().addListener((obs, oldTime, newTime) -> {
-            if (!isSeeking && mediaPlayer != null && mediaPlayer.getTotalDuration().greaterThan(Duration.ZERO)) {
-                Platform.runLater(() -> updateProgress(newTime));
-            }
-        });
     }
 
-    private void updateProgress(Duration currentTime) {
-        if (mediaPlayer == null || !mediaPlayer.getTotalDuration().greaterThan(Duration.ZERO)) {
-            return;
-        }
-        
-        double progress = currentTime.toMillis() / mediaPlayer.getTotalDuration().toMillis();
-        progressSlider.setValue(progress * 100);
-        
-        String currentTimeStr = formatTime(currentTime.toSeconds());
-        String totalTimeStr = formatTime(mediaPlayer.getTotalDuration().toSeconds());
-        timeLabel.setText(currentTimeStr + " / " + totalTimeStr);
+    private void onPlayerReady() {
+        if (mediaPlayer == null || currentModel == null) return;
+        if (attempt != null) attempt.ready();
+        currentTrack.setText(currentModel.getTitle());
+        progressSlider.setValue(0);
+        showTime(0, totalSeconds());
+        updateUI();
+    }
+
+    // один шаг прогресса за импульс таймера; метка меняется только при смене отображаемой секунды
+    private void onProgressPulse() {
+        if (mediaPlayer == null) return;
+        double totalMillis = mediaPlayer.getTotalDuration().toMillis();
+        if (!(totalMillis > 0) || Double.isInfinite(totalMillis)) return;
+        double currentMillis = mediaPlayer.getCurrentTime().toMillis();
+
+        if (!isSeeking) progressSlider.setValue(currentMillis / totalMillis * 100);
+        int total = (int) (totalMillis / 1000);
+        showTime((int) (currentMillis / 1000), total);
+
+        if (preloadedPlayer == null && (totalMillis - currentMillis) / 1000 <= PRELOAD_SECONDS) preloadNext();
+    }
+
+    private int totalSeconds() {
+        if (mediaPlayer == null) return -1;
+        double seconds = mediaPlayer.getTotalDuration().toSeconds();
+        return seconds > 0 && !Double.isInfinite(seconds) ? (int) seconds : -1;
+    }
+
+    private void showTime(int current, int total) {
+        if (current == shownSecond && total == shownTotal) return;
+        shownSecond = current;
+        shownTotal = total;
+        int len = appendTime(timeChars, 0, current);
+        timeChars[len++] = ' ';
+        timeChars[len++] = '/';
+        timeChars[len++] = ' ';
+        len = appendTime(timeChars, len, total);
+        timeLabel.setText(new String(timeChars, 0, len));
     }
 
-    private String formatTime(double seconds) {
-        if (Double.isInfinite(seconds) || Double.isNaN(seconds)) {
-            return "--:--";
+    // mm:ss без String.format; отрицательное значение — неизвестная длительность
+    private static int appendTime(char[] buf, int pos, int seconds) {
+        if (seconds < 0) {
+            "--:--".getChars(0, 5, buf, pos);
+            return pos + 5;
         }
-        int min = (int) seconds / 60;
-        int sec = (int) seconds % 60;
-        return String.format("%02d:%02d", min, sec);
+        int min = Math.min(seconds / 60, 999);
+        int sec = seconds % 60;
+        if (min >= 100) buf[pos++] = (char) ('0' + min / 100);
+        buf[pos++] = (char) ('0' + min / 10 % 10);
+        buf[pos++] = (char) ('0' + min % 10);
+        buf[pos++] = ':';
+        buf[pos++] = (char) ('0' + sec / 10);
+        buf[pos++] = (char) ('0' + sec % 10);
+        return pos;
     }
 
     private void updateUI() {
@@ -366,7 +589,9 @@ public class AudioPlayer extends HBox {
         mediaPlayer = null;
         isPlaying = false;
         
+        progressTimer.stop();
         progressSlider.setValue(0);
+        shownSecond = -1;
         timeLabel.setText("00:00 / 00:00");
         
         if (currentModel != null) {
@@ -384,6 +609,7 @@ public class AudioPlayer extends HBox {
     }
 
     public void cleanup() {
+        discardPreloaded();
         stop();
         currentModel = null;
         currentTrack.setText("No track playing");
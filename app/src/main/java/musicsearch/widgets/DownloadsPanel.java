@@ -0,0 +1,180 @@
+package musicsearch.widgets;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import musicsearch.service.DownloadJob;
+import musicsearch.service.DownloadManager;
+
+/**
+ * Общая панель загрузок: активные и ожидающие загрузки в одном списке.
+ * Прогресс опрашивается по таймеру, а не по событию на каждый блок данных.
+ */
+public class DownloadsPanel extends VBox {
+    private final DownloadManager manager;
+    private final Label summaryLabel = new Label();
+    private final VBox rowsBox = new VBox(8);
+    private final Map<Long, Row> rows = new HashMap<>();
+    private final Timeline refresher;
+
+    public DownloadsPanel(DownloadManager manager) {
+        this.manager = manager;
+
+        summaryLabel.setStyle("-fx-text-fill: #D6D6E3; -fx-font-weight: bold;");
+        Button clearButton = new Button("Очистить");
+        clearButton.setStyle(buttonStyle());
+        clearButton.setOnAction(e -> {
+            manager.clearFinished();
+            refresh();
+        });
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox header = new HBox(8, summaryLabel, spacer, clearButton);
+        header.setAlignment(Pos.CENTER_LEFT);
+
+        ScrollPane scroll = new ScrollPane(rowsBox);
+        scroll.setFitToWidth(true);
+        scroll.setStyle("-fx-background: #1E2330; -fx-background-color: #1E2330;");
+        VBox.setVgrow(scroll, Priority.ALWAYS);
+
+        setSpacing(10);
+        setPadding(new Insets(10));
+        setPrefWidth(300);
+        setStyle("-fx-background-color: #1E2330; -fx-border-color: #3A4050; -fx-border-width: 0 0 0 1;");
+        getChildren().addAll(header, scroll);
+
+        refresher = new Timeline(new KeyFrame(Duration.millis(250), e -> refresh()));
+        refresher.setCycleCount(Timeline.INDEFINITE);
+        refresher.play();
+        refresh();
+    }
+
+    public void stop() {
+        refresher.stop();
+    }
+
+    private void refresh() {
+        List<DownloadJob> jobs = manager.getJobs();
+        boolean hasJobs = !jobs.isEmpty();
+        setVisible(hasJobs);
+        setManaged(hasJobs);
+        if (!hasJobs && rows.isEmpty()) return;
+
+        Set<Long> present = new HashSet<>();
+        boolean changed = false;
+        for (DownloadJob job : jobs) {
+            present.add(job.getId());
+            if (!rows.containsKey(job.getId())) {
+                rows.put(job.getId(), new Row(job));
+                changed = true;
+            }
+        }
+        changed |= rows.keySet().retainAll(present);
+        if (changed) {
+            rowsBox.getChildren().clear();
+            for (DownloadJob job : jobs) rowsBox.getChildren().add(rows.get(job.getId()).box);
+        }
+        for (Row row : rows.values()) row.update();
+
+        summaryLabel.setText("Загрузки: " + manager.getRunningCount() + " активных, "
+                + manager.getQueuedCount() + " в очереди, " + formatRate(manager.getThroughput()));
+    }
+
+    private static String formatRate(double bytesPerSec) {
+        if (bytesPerSec >= 1024 * 1024) return String.format("%.1f MB/s", bytesPerSec / (1024 * 1024));
+        return String.format("%.0f KB/s", bytesPerSec / 1024);
+    }
+
+    private static String formatSize(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private class Row {
+        final DownloadJob job;
+        final VBox box;
+        final ProgressBar progressBar = new ProgressBar(0);
+        final Label statusLabel = new Label();
+        final Button pauseButton = new Button("⏸");
+        final Button cancelButton = new Button("✕");
+        DownloadJob.State shownState;
+
+        Row(DownloadJob job) {
+            this.job = job;
+            Label titleLabel = new Label(job.getMedia().getTitle());
+            titleLabel.setStyle("-fx-text-fill: #D6D6E3;");
+            titleLabel.setMaxWidth(260);
+            statusLabel.setStyle("-fx-text-fill: #9EA3B5; -fx-font-size: 11px;");
+            progressBar.setMaxWidth(Double.MAX_VALUE);
+            HBox.setHgrow(progressBar, Priority.ALWAYS);
+
+            pauseButton.setStyle(buttonStyle());
+            cancelButton.setStyle(buttonStyle());
+            pauseButton.setOnAction(e -> {
+                switch (job.getState()) {
+                    case PAUSED -> manager.resume(job);
+                    case FAILED -> manager.retry(job);
+                    default -> manager.pause(job);
+                }
+            });
+            cancelButton.setOnAction(e -> manager.cancel(job));
+
+            HBox controls = new HBox(5, progressBar, pauseButton, cancelButton);
+            controls.setAlignment(Pos.CENTER_LEFT);
+            box = new VBox(3, titleLabel, controls, statusLabel);
+        }
+
+        void update() {
+            DownloadJob.State state = job.getState();
+            if (state == DownloadJob.State.RUNNING) {
+                progressBar.setProgress(job.getProgress());
+                statusLabel.setText(job.getTotal() > 0
+                        ? formatSize(job.getTransferred()) + " / " + formatSize(job.getTotal())
+                        : formatSize(job.getTransferred()));
+            }
+            if (state == shownState) return;
+            shownState = state;
+
+            switch (state) {
+                case QUEUED -> statusLabel.setText("В очереди");
+                case PAUSED -> statusLabel.setText("Пауза, " + formatSize(job.getTransferred()));
+                case DONE -> {
+                    progressBar.setProgress(1);
+                    statusLabel.setText("Готово: " + job.getTarget().getName());
+                }
+                case FAILED -> statusLabel.setText("Ошибка: " + job.getError());
+                case CANCELLED -> statusLabel.setText("Отменено");
+                case RUNNING -> {}
+            }
+            if (state == DownloadJob.State.QUEUED || state == DownloadJob.State.PAUSED) {
+                progressBar.setProgress(Math.max(0, job.getProgress()));
+            }
+            pauseButton.setText(switch (state) {
+                case PAUSED -> "▶";
+                case FAILED -> "⟳";
+                default -> "⏸";
+            });
+            pauseButton.setDisable(job.isFinished() && state != DownloadJob.State.FAILED);
+            cancelButton.setDisable(state == DownloadJob.State.DONE || state == DownloadJob.State.CANCELLED);
+        }
+    }
+
+    private static String buttonStyle() {
+        return "-fx-background-color: #323848; -fx-text-fill: #D6D6E3;";
+    }
+}
@@ -1,16 +1,15 @@
 package musicsearch.widgets;
 
-import javafx.scene.Node;
 import javafx.scene.Scene;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.GridPane;
 
 import java.util.List;
 
 import javafx.application.Platform;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
+import musicsearch.service.AudioCache;
+import musicsearch.service.AudioPrefetcher;
+import musicsearch.service.Config;
+import musicsearch.service.DownloadManager;
 import musicsearch.service.EventBus;
 import musicsearch.service.SearchEngine;
 import musicsearch.service.Events.ArtistSearchEvent;
@@ -25,25 +24,19 @@ public class MainWindow {
     private BorderPane root;
     private AudioPlayer audioPlayer;
     private SearchEngine searchEngine;
+    private DownloadsPanel downloadsPanel;
     private static FileEngine fileEngine = new FileEngine();
+    // доля прокрутки, после которой следующая страница результатов загружается заранее
+    private static final double PREFETCH_THRESHOLD = Config.getInt("PREFETCH_THRESHOLD_PERCENT", 60) / 100.0;
 
     public MainWindow() {
         root = new BorderPane();
 
-        GridPane mediaLayout = new GridPane();
-        mediaLayout.setHgap(15);
-        mediaLayout.setVgap(15);
-        mediaLayout.setPadding(new Insets(30));
-
-        ScrollPane scrollPane = new ScrollPane(mediaLayout);
-        scrollPane.setFitToWidth(true);
-        scrollPane.setStyle(scrollBarStyle());
-        setupScrollListener(scrollPane);
-
-        scrollPane.getStylesheets().add(
+        MediaGrid mediaLayout = new MediaGrid();
+        mediaLayout.getStylesheets().add(
             "data:text/css," + scrollBarStyle().replaceAll("\\s+", " ")
         );
-        scrollPane.setStyle(scrollPaneStyle());
+        mediaLayout.setStyle(backgroundStyle());
 
         this.searchEngine = new SearchEngine(mediaLayout);
         this.audioPlayer = new AudioPlayer(null);
@@ -51,11 +44,8 @@ public class MainWindow {
         PlaybackListener playbackListener = new PlaybackListener() {
             @Override
             public void onTrackSelected(MediaModel model) {
-                List<MediaModel> list = searchEngine.getResults();
-                if (list == null || list.isEmpty()) return;
-                int idx = findIndexByUrl(list, model);
-                if (idx < 0) idx = 0;
-                audioPlayer.setPlaylistAndPlay(list, idx);
+                // трек без позиции в списке: играет сразу, дальше продолжается текущая очередь
+                audioPlayer.playNow(model);
             }
 
             @Override
@@ -65,15 +55,9 @@ public class MainWindow {
                 audioPlayer.setPlaylistAndPlay(playlist, idx);
             }
 
-            private int findIndexByUrl(List<MediaModel> list, MediaModel model) {
-                if (model == null || list == null) return -1;
-                for (int i = 0; i < list.size(); i++) {
-                    MediaModel m = list.get(i);
-                    if (m != null && m.getUrl() != null && m.getUrl().equals(model.getUrl())) {
-                        return i;
-                    }
-                }
-                return -1;
+            @Override
+            public void onPlayNext(MediaModel model) {
+                audioPlayer.playNextInQueue(model);
             }
         };
 
@@ -83,20 +67,13 @@ public class MainWindow {
         audioPlayer.setSearchWidget(searchWidget);
 
         setupGlobalEventListeners();
-        scrollPane.setFitToWidth(true);
+        setupScrollListener(mediaLayout);
 
-        scrollPane.viewportBoundsProperty().addListener((obs, oldVal, newVal) -> {
-            Node viewport = scrollPane.lookup(".viewport");
-            if (viewport != null) {
-                viewport.setStyle(backgroundStyle());
-            }
-        });
-
-        mediaLayout.setStyle(backgroundStyle());
-        mediaLayout.setAlignment(Pos.CENTER);
+        downloadsPanel = new DownloadsPanel(DownloadManager.getInstance());
 
         root.setTop(searchWidget.getWidget());
-        root.setCenter(scrollPane);
+        root.setCenter(mediaLayout);
+        root.setRight(downloadsPanel);
 
         scene = new Scene(root, 1005, 600);
         root.setBottom(audioPlayer);
@@ -104,14 +81,7 @@ public class MainWindow {
         CurrentTrackListener widgetTracker = new CurrentTrackListener() {
             @Override
             public void onCurrentTrackChanged(MediaModel currentTrack) {
-                Platform.runLater(() -> {
-                    for (Node node : mediaLayout.getChildren()) {
-                        if (node instanceof MediaWidget) {
-                            MediaWidget widget = (MediaWidget) node;
-                            widget.onCurrentTrackChanged(currentTrack);
-                        }
-                    }
-                });
+                Platform.runLater(() -> mediaLayout.setCurrentTrack(currentTrack));
             }
         };
 
@@ -124,16 +94,28 @@ public class MainWindow {
         if (this.searchEngine != null) {
             searchEngine.shutdown();
         }
+        if (this.downloadsPanel != null) {
+            downloadsPanel.stop();
+        }
+        DownloadManager.getInstance().shutdown();
+        AudioCache.getInstance().shutdown();
+        AudioPrefetcher.getInstance().shutdown();
+        if (this.audioPlayer != null) {
+            System.out.println("Playback metrics:\n" + audioPlayer.getMetrics());
+        }
     }
 
     public Scene getScene() {
         return scene;
     }
 
-    private void setupScrollListener(ScrollPane scrollPane) {
-        scrollPane.vvalueProperty().addListener((obs, oldVal, newVal) -> {
-            if (newVal.doubleValue() == scrollPane.getVmax()) {
+    private void setupScrollListener(MediaGrid mediaLayout) {
+        mediaLayout.scrollFractionProperty().addListener((obs, oldVal, newVal) -> {
+            double position = newVal.doubleValue();
+            if (position >= 1.0) {
                 searchEngine.loadMoreResults();
+            } else if (position >= PREFETCH_THRESHOLD) {
+                searchEngine.prefetchMoreResults();
             }
         });
     }
@@ -161,10 +143,6 @@ public class MainWindow {
             "}";
     }
 
-    private final String scrollPaneStyle() {
-        return "-fx-background: #1E2330;" +
-            "-fx-background-color: #1E2330;";
-    }
     private final String backgroundStyle() {
         return "-fx-background-color: #1E2330;";
     }
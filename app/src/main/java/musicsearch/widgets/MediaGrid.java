@@ -0,0 +1,251 @@
+package musicsearch.widgets;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+import musicsearch.models.MediaModel;
+
+/**
+ * Сетка результатов с виртуализацией: виджеты существуют только для видимых строк и BUFFER_ROWS строк
+ * запаса, при прокрутке уехавшие виджеты перепривязываются к новым трекам. Число узлов и стоимость
+ * раскладки зависят от размера окна, а не от длины списка. Изменения списка применяются точечно:
+ * при дозагрузке появляются только новые ячейки, при удалении освобождаются только ячейки удалённых
+ * треков, остальные виджеты сохраняют обложки и отметку текущего трека.
+ */
+public class MediaGrid extends Region {
+    private static final double GAP = 15;
+    private static final double PADDING = 30;
+    private static final int BUFFER_ROWS = 1;
+
+    public interface CellFactory {
+        MediaWidget create(MediaModel model, List<MediaModel> items, int index);
+    }
+
+    private final ScrollBar scrollBar = new ScrollBar();
+    private final ReadOnlyDoubleWrapper scrollFraction = new ReadOnlyDoubleWrapper(0);
+    // индекс в списке -> виджет, который его сейчас показывает
+    private final Map<Integer, MediaWidget> active = new HashMap<>();
+    private final Deque<MediaWidget> free = new ArrayDeque<>();
+    private CellFactory cellFactory;
+    private final ListChangeListener<MediaModel> itemsListener = this::onItemsChanged;
+    private ObservableList<MediaModel> items = FXCollections.emptyObservableList();
+    private MediaModel currentTrack;
+    private double cellWidth = -1;
+    private double cellHeight = -1;
+
+    public MediaGrid() {
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setVisible(false);
+        scrollBar.valueProperty().addListener((obs, oldVal, newVal) -> {
+            updateScrollFraction();
+            requestLayout();
+        });
+        getChildren().add(scrollBar);
+
+        setOnScroll(event -> scrollBy(-event.getDeltaY()));
+
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+    }
+
+    public void setCellFactory(CellFactory cellFactory) {
+        this.cellFactory = cellFactory;
+    }
+
+    /**
+     * Показывает список (по ссылке, без копирования) и дальше следит за его изменениями. Для другого
+     * экземпляра списка видимые виджеты перепривязываются, а прокрутка возвращается в начало.
+     */
+    public void setItems(ObservableList<MediaModel> items) {
+        ObservableList<MediaModel> list = items != null ? items : FXCollections.emptyObservableList();
+        if (list == this.items) return;
+        this.items.removeListener(itemsListener);
+        this.items = list;
+        list.addListener(itemsListener);
+        for (MediaWidget cell : active.values()) release(cell);
+        active.clear();
+        scrollBar.setValue(0);
+        requestLayout();
+    }
+
+    // индексы ячеек сдвигаются вслед за списком; освобождаются только ячейки удалённых или заменённых треков
+    private void onItemsChanged(ListChangeListener.Change<? extends MediaModel> change) {
+        while (change.next()) {
+            int from = change.getFrom();
+            Map<Integer, MediaWidget> shifted = new HashMap<>();
+            for (Map.Entry<Integer, MediaWidget> entry : active.entrySet()) {
+                int index = entry.getKey();
+                MediaWidget cell = entry.getValue();
+                int newIndex;
+                if (index < from) {
+                    newIndex = index;
+                } else if (change.wasPermutated()) {
+                    newIndex = index < change.getTo() ? change.getPermutation(index) : index;
+                } else if (index < from + change.getRemovedSize()) {
+                    release(cell);
+                    continue;
+                } else {
+                    newIndex = index - change.getRemovedSize() + change.getAddedSize();
+                }
+                if (newIndex != index) cell.setIndex(newIndex);
+                shifted.put(newIndex, cell);
+            }
+            active.clear();
+            active.putAll(shifted);
+        }
+        requestLayout();
+    }
+
+    /**
+     * Доля прокрутки от 0 до 1; 0, если всё помещается без прокрутки.
+     */
+    public ReadOnlyDoubleProperty scrollFractionProperty() {
+        return scrollFraction.getReadOnlyProperty();
+    }
+
+    public void setCurrentTrack(MediaModel currentTrack) {
+        this.currentTrack = currentTrack;
+        for (MediaWidget cell : active.values()) cell.showCurrentTrack(currentTrack);
+    }
+
+    /**
+     * Обходит виджеты, которые сейчас показывают треки (видимые и строки запаса).
+     */
+    public void forEachCell(Consumer<MediaWidget> action) {
+        for (MediaWidget cell : active.values()) action.accept(cell);
+    }
+
+    public MediaWidget cellFor(MediaModel model) {
+        for (MediaWidget cell : active.values()) {
+            if (cell.getModel() == model) return cell;
+        }
+        return null;
+    }
+
+    private void scrollBy(double delta) {
+        if (!scrollBar.isVisible()) return;
+        scrollBar.setValue(Math.max(0, Math.min(scrollBar.getMax(), scrollBar.getValue() + delta)));
+    }
+
+    private void updateScrollFraction() {
+        double max = scrollBar.getMax();
+        scrollFraction.set(max > 0 ? scrollBar.getValue() / max : 0);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        double barWidth = scrollBar.prefWidth(-1);
+        if (items.isEmpty() || cellFactory == null || !measureCell()) {
+            scrollBar.setVisible(false);
+            return;
+        }
+
+        double rowHeight = cellHeight + GAP;
+        int columns = Math.max(1, (int) ((width - barWidth - 2 * PADDING + GAP) / (cellWidth + GAP)));
+        int rows = (items.size() + columns - 1) / columns;
+        double contentHeight = 2 * PADDING + rows * rowHeight - GAP;
+        double max = Math.max(0, contentHeight - height);
+
+        scrollBar.setMax(max);
+        scrollBar.setVisibleAmount(max > 0 ? max * height / contentHeight : 0);
+        scrollBar.setUnitIncrement(rowHeight / 4);
+        scrollBar.setBlockIncrement(height);
+        if (scrollBar.getValue() > max) scrollBar.setValue(max);
+        scrollBar.setVisible(max > 0);
+        scrollBar.resizeRelocate(width - barWidth, 0, barWidth, height);
+        updateScrollFraction();
+        double offset = scrollBar.getValue();
+
+        int firstRow = Math.max(0, (int) ((offset - PADDING) / rowHeight) - BUFFER_ROWS);
+        int lastRow = Math.min(rows - 1, (int) ((offset + height - PADDING) / rowHeight) + BUFFER_ROWS);
+        int from = firstRow * columns;
+        int to = Math.min(items.size(), (lastRow + 1) * columns);
+
+        active.entrySet().removeIf(entry -> {
+            if (entry.getKey() >= from && entry.getKey() < to) return false;
+            release(entry.getValue());
+            return true;
+        });
+
+        double gridWidth = columns * (cellWidth + GAP) - GAP;
+        double left = Math.max(PADDING, (width - barWidth - gridWidth) / 2);
+        for (int i = from; i < to; i++) {
+            MediaWidget cell = active.get(i);
+            if (cell == null) {
+                cell = obtain(i);
+                active.put(i, cell);
+            }
+            int row = i / columns;
+            int column = i % columns;
+            cell.resizeRelocate(snapPositionX(left + column * (cellWidth + GAP)),
+                    snapPositionY(PADDING + row * rowHeight - offset), cellWidth, cellHeight);
+        }
+    }
+
+    // размер ячейки берётся у первого созданного виджета: все ячейки одинаковые
+    private boolean measureCell() {
+        if (cellWidth > 0) return true;
+        MediaWidget probe = free.peek();
+        if (probe == null) {
+            probe = cellFactory.create(items.get(0), items, 0);
+            probe.setVisible(false);
+            getChildren().add(0, probe);
+            free.push(probe);
+        }
+        probe.applyCss();
+        cellWidth = snapSizeX(Math.max(probe.prefWidth(-1), probe.minWidth(-1)));
+        cellHeight = snapSizeY(Math.max(probe.prefHeight(cellWidth), probe.minHeight(cellWidth)));
+        return cellWidth > 0 && cellHeight > 0;
+    }
+
+    // освобождённая ячейка могла показывать этот же трек (удаление и повторное добавление) — тогда без перепривязки
+    private MediaWidget obtain(int index) {
+        MediaModel model = items.get(index);
+        MediaWidget cell = free.poll();
+        if (cell == null) {
+            cell = cellFactory.create(model, items, index);
+            // ячейки под полосой прокрутки
+            getChildren().add(0, cell);
+        } else if (cell.getModel() != model || cell.parentPlaylist != items) {
+            cell.bind(model, items, index);
+        } else {
+            cell.setIndex(index);
+        }
+        cell.setVisible(true);
+        cell.showCurrentTrack(currentTrack);
+        return cell;
+    }
+
+    private void release(MediaWidget cell) {
+        cell.unbind();
+        cell.setVisible(false);
+        free.push(cell);
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 5 * (170 + GAP) - GAP + 2 * PADDING;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 400;
+    }
+}
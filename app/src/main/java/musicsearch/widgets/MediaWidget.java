@@ -1,10 +1,14 @@
 package musicsearch.widgets;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,13 +28,27 @@ import musicsearch.models.DataUpdateListener;
 import musicsearch.models.MediaModel;
 import musicsearch.models.PlaybackListener;
 import musicsearch.models.CurrentTrackListener;
+import musicsearch.service.AudioPrefetcher;
+import musicsearch.service.Config;
 import musicsearch.service.EventBus;
+import musicsearch.service.HttpService;
 import musicsearch.service.Events.*;
 import musicsearch.service.MP3CoverExtractor;
 
 public class MediaWidget extends VBox implements CurrentTrackListener {
-    private static final Map<String, Image> coverCache = new ConcurrentHashMap<>();
-    private static final ExecutorService IMAGE_EXECUTOR = Executors.newCachedThreadPool(r -> {
+    private static final int COVER_CACHE_SIZE = Config.getInt("COVER_CACHE_SIZE", 300);
+    // LRU по последнему показу: длинная прокрутка не держит в памяти все когда-либо виденные обложки
+    private static final Map<String, Image> coverCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Image>(COVER_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+                    return size() > COVER_CACHE_SIZE;
+                }
+            });
+    private static final Duration COVER_TIMEOUT = Duration.ofSeconds(10);
+    // ограниченный пул: при быстрой прокрутке задачи ждут в очереди, а не плодят потоки
+    private static final ExecutorService IMAGE_EXECUTOR = Executors.newFixedThreadPool(
+            Config.getInt("COVER_LOADER_THREADS", 4), r -> {
         Thread t = new Thread(r);
         t.setName("media-image-loader-" + t.getId());
         t.setDaemon(true);
@@ -41,14 +59,21 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
         return t;
     });
 
-    private final MediaModel mediaModel;
+    private static Image placeholderImage;
+
+    // пишется в потоке FX, читается и потоками загрузки обложек
+    private volatile MediaModel mediaModel;
     private final PlaybackListener playbackListener;
     private final ImageView imageView;
     private boolean imageLoaded = false;
     private boolean isCurrentTrack = false;
     private boolean isDownloaded;
+    private Label artistLabel;
+    private Label songLabel;
+    private Label durationLabel;
     private Label downloadedIndicatorLabel;
     private ContextMenu contextMenu;
+    private AudioPrefetcher.Handle prefetch;
     private final DataUpdateListener dataUpdateListener;
 
     public List<MediaModel> parentPlaylist = new ArrayList<>();
@@ -64,10 +89,23 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
                        DataUpdateListener dataUpdateListener,
                        List<MediaModel> parentPlaylist,
                        int index) {
-        this.mediaModel = mediaModel;
         this.playbackListener = playbackListener;
-        this.isDownloaded = mediaModel.isDownloaded();
         this.dataUpdateListener = dataUpdateListener;
+        this.imageView = new ImageView();
+        setupUI();
+        setupEvents();
+        loadImageLazily();
+        bind(mediaModel, parentPlaylist, index);
+    }
+
+    /**
+     * Привязывает виджет к другому треку (ячейки сетки переиспользуются при прокрутке): тексты, значок
+     * загрузки и обложка обновляются, а незавершённая загрузка обложки прежнего трека игнорируется.
+     */
+    public void bind(MediaModel mediaModel, List<MediaModel> parentPlaylist, int index) {
+        unbind();
+        this.mediaModel = mediaModel;
+        this.isDownloaded = mediaModel.isDownloaded();
         if (parentPlaylist != null) {
             this.parentPlaylist = parentPlaylist;
             this.thisIndex = index;
@@ -75,11 +113,20 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
             this.parentPlaylist = new ArrayList<>();
             this.thisIndex = -1;
         }
-        this.imageView = new ImageView();
-        setupUI();
-        setupEvents();
-        loadImageLazily();
+        contextMenu = null;
+        isCurrentTrack = false;
         this.setStyle(NORMAL_STYLE);
+        showModel();
+
+        Image cached = mediaModel.getImageUrl() != null ? coverCache.get(mediaModel.getImageUrl()) : null;
+        if (cached != null) {
+            imageView.setImage(cached);
+            imageLoaded = true;
+            return;
+        }
+        imageLoaded = false;
+        setPlaceholderImage();
+        if (getScene() != null) submitImageLoad();
     }
 
     private void setupUI() {
@@ -93,29 +140,16 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
         imageView.setSmooth(true);
         imageView.setStyle("-fx-background-color: #4A4A5F; -fx-background-radius: 6px;");
 
-        setPlaceholderImage();
-
         StackPane imageContainer = new StackPane(imageView);
         imageContainer.setPrefSize(150, 150);
         imageContainer.setStyle("-fx-alignment: center;");
 
-        String artistText = "";
-        String songText = "";
-        if (mediaModel.getTitle() != null && mediaModel.getTitle().contains("-")) {
-            String[] parts = mediaModel.getTitle().split("-", 2);
-            artistText = parts[0].trim();
-            songText = parts[1].trim();
-        } else {
-            artistText = mediaModel.getTitle() != null ? mediaModel.getTitle() : "";
-            songText = "";
-        }
-
-        Label Artist = new Label(truncateText(artistText, 30));
-        Label Song = new Label(truncateText(songText, 30));
-        Artist.setStyle("-fx-text-fill: #D6D6E3;");
-        Song.setStyle("-fx-text-fill: #D6D6E3;");
+        artistLabel = new Label();
+        songLabel = new Label();
+        artistLabel.setStyle("-fx-text-fill: #D6D6E3;");
+        songLabel.setStyle("-fx-text-fill: #D6D6E3;");
 
-        Label durationLabel = new Label(mediaModel.getTime());
+        durationLabel = new Label();
         durationLabel.setStyle("-fx-text-fill: #9EA3B5; -fx-font-size: 10px;");
 
         downloadedIndicatorLabel = new Label("⬇");
@@ -128,10 +162,9 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
             "-fx-alignment: center;" +
             "-fx-padding: 2 6 2 6;"
         );
-        downloadedIndicatorLabel.setVisible(isDownloaded);
         Tooltip.install(downloadedIndicatorLabel, new Tooltip("Файл загружен локально"));
 
-        VBox contentBox = new VBox(5, imageContainer, Artist, Song, durationLabel);
+        VBox contentBox = new VBox(5, imageContainer, artistLabel, songLabel, durationLabel);
         contentBox.setAlignment(javafx.geometry.Pos.TOP_CENTER);
 
         StackPane indicatorContainer = new StackPane(downloadedIndicatorLabel);
@@ -143,7 +176,31 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
         this.getChildren().setAll(root);
     }
 
+    private void showModel() {
+        String artistText = "";
+        String songText = "";
+        if (mediaModel.getTitle() != null && mediaModel.getTitle().contains("-")) {
+            String[] parts = mediaModel.getTitle().split("-", 2);
+            artistText = parts[0].trim();
+            songText = parts[1].trim();
+        } else {
+            artistText = mediaModel.getTitle() != null ? mediaModel.getTitle() : "";
+            songText = "";
+        }
+        artistLabel.setText(truncateText(artistText, 30));
+        songLabel.setText(truncateText(songText, 30));
+        durationLabel.setText(mediaModel.getTime());
+        updateDownloadedIndicator();
+    }
+
+    // заглушка читается из ресурсов один раз на все виджеты
     private void setPlaceholderImage() {
+        if (placeholderImage == null) placeholderImage = loadPlaceholderImage();
+        imageView.setImage(placeholderImage);
+        imageLoaded = false;
+    }
+
+    private Image loadPlaceholderImage() {
         Image placeholder = null;
         try {
             InputStream is = getClass().getResourceAsStream("/images/music_placeholder.png");
@@ -162,22 +219,28 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
         if (placeholder == null) {
             placeholder = new WritableImage(1, 1);
         }
-        imageView.setImage(placeholder);
+        return placeholder;
+    }
+
+    // обложка применяется, только если виджет всё ещё показывает тот же трек
+    private void showCoverFor(MediaModel model, Runnable apply) {
+        if (model == mediaModel) apply.run();
     }
 
     // вставь вместо старого метода loadLocalCover()
-    private void loadLocalCover() {
+    private void loadLocalCover(MediaModel model) {
         IMAGE_EXECUTOR.submit(() -> {
+            if (model != mediaModel) return;
             try {
-                String raw = mediaModel.getUrl();
+                String raw = model.getUrl();
                 if (raw == null || raw.isEmpty()) {
-                    Platform.runLater(() -> {
-                        if (mediaModel.getImageUrl() != null && !mediaModel.getImageUrl().isEmpty()) {
-                            loadRemoteCover();
+                    Platform.runLater(() -> showCoverFor(model, () -> {
+                        if (model.getImageUrl() != null && !model.getImageUrl().isEmpty()) {
+                            loadRemoteCover(model);
                         } else {
                             setPlaceholderImage();
                         }
-                    });
+                    }));
                     return;
                 }
 
@@ -209,10 +272,10 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
                 File file = new File(fsPath);
                 if (!file.exists() || !file.canRead()) {
                     System.err.println("DEBUG: local file missing or unreadable: " + fsPath);
-                    Platform.runLater(() -> {
-                        if (mediaModel.getImageUrl() != null && !mediaModel.getImageUrl().isEmpty()) loadRemoteCover();
+                    Platform.runLater(() -> showCoverFor(model, () -> {
+                        if (model.getImageUrl() != null && !model.getImageUrl().isEmpty()) loadRemoteCover(model);
                         else setPlaceholderImage();
-                    });
+                    }));
                     return;
                 }
 
@@ -230,12 +293,16 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
                             Platform.runLater(() -> {
                                 if (!img.isError()) {
                                     coverCache.put(coverFile.toURI().toString(), img);
-                                    imageView.setImage(img);
-                                    imageLoaded = true;
+                                    showCoverFor(model, () -> {
+                                        imageView.setImage(img);
+                                        imageLoaded = true;
+                                    });
                                 } else {
                                     System.err.println("DEBUG: image reported error after loading from coverFile");
-                                    if (mediaModel.getImageUrl() != null && !mediaModel.getImageUrl().isEmpty()) loadRemoteCover();
-                                    else setPlaceholderImage();
+                                    showCoverFor(model, () -> {
+                                        if (model.getImageUrl() != null && !model.getImageUrl().isEmpty()) loadRemoteCover(model);
+                                        else setPlaceholderImage();
+                                    });
                                 }
                             });
                             return;
@@ -248,19 +315,19 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
                 }
 
                 // fallback: если mediaModel содержит внешнюю imageUrl — пробуем её
-                if (mediaModel.getImageUrl() != null && !mediaModel.getImageUrl().isEmpty()) {
-                    Platform.runLater(this::loadRemoteCover);
+                if (model.getImageUrl() != null && !model.getImageUrl().isEmpty()) {
+                    Platform.runLater(() -> showCoverFor(model, () -> loadRemoteCover(model)));
                 } else {
-                    Platform.runLater(this::setPlaceholderImage);
+                    Platform.runLater(() -> showCoverFor(model, this::setPlaceholderImage));
                 }
 
             } catch (Throwable t) {
                 System.err.println("Error in loadLocalCover: " + t.getMessage());
                 t.printStackTrace();
-                Platform.runLater(() -> {
-                    if (mediaModel.getImageUrl() != null && !mediaModel.getImageUrl().isEmpty()) loadRemoteCover();
+                Platform.runLater(() -> showCoverFor(model, () -> {
+                    if (model.getImageUrl() != null && !model.getImageUrl().isEmpty()) loadRemoteCover(model);
                     else setPlaceholderImage();
-                });
+                }));
             }
         });
     }
@@ -299,9 +366,13 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
 
         this.setOnMouseEntered(event -> {
             if (!isCurrentTrack) this.setStyle(HOVER_STYLE);
+            if (!isDownloaded) prefetch = AudioPrefetcher.getInstance().prefetchOnHover(mediaModel.getUrl());
         });
 
-        this.setOnMouseExited(event -> updateStyle());
+        this.setOnMouseExited(event -> {
+            updateStyle();
+            unbind();
+        });
     }
 
     private void updateStyle() {
@@ -311,84 +382,116 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
 
     @Override
     public void onCurrentTrackChanged(MediaModel currentTrack) {
-        Platform.runLater(() -> {
-            boolean wasCurrent = isCurrentTrack;
-            if (currentTrack == null || currentTrack.getUrl() == null) {
-                isCurrentTrack = false;
-            } else {
-                isCurrentTrack = mediaModel.getUrl() != null && mediaModel.getUrl().equals(currentTrack.getUrl());
-            }
-            if (wasCurrent != isCurrentTrack) updateStyle();
-        });
+        Platform.runLater(() -> showCurrentTrack(currentTrack));
+    }
+
+    void showCurrentTrack(MediaModel currentTrack) {
+        boolean wasCurrent = isCurrentTrack;
+        if (currentTrack == null || currentTrack.getUrl() == null) {
+            isCurrentTrack = false;
+        } else {
+            isCurrentTrack = mediaModel.getUrl() != null && mediaModel.getUrl().equals(currentTrack.getUrl());
+        }
+        if (wasCurrent != isCurrentTrack) updateStyle();
     }
 
     private void loadImageLazily() {
         this.sceneProperty().addListener((obs, oldScene, newScene) -> {
             if (newScene != null && !imageLoaded) {
-                IMAGE_EXECUTOR.submit(this::loadImageAsync);
+                submitImageLoad();
             }
         });
     }
 
-    private void loadImageAsync() {
-        if (isDownloaded && mediaModel.getUrl() != null && !mediaModel.getUrl().isEmpty()) {
-            loadLocalCover();
+    // задача, дождавшаяся очереди после перепривязки ячейки к другому треку, ничего не грузит
+    private void submitImageLoad() {
+        MediaModel model = mediaModel;
+        IMAGE_EXECUTOR.submit(() -> {
+            if (model == mediaModel) loadImageAsync(model);
+        });
+    }
+
+    private void loadImageAsync(MediaModel model) {
+        if (model.isDownloaded() && hasIndexedCover(model)) {
+            loadRemoteCover(model);
+        } else if (model.isDownloaded() && model.getUrl() != null && !model.getUrl().isEmpty()) {
+            loadLocalCover(model);
         } else {
-            loadRemoteCover();
+            loadRemoteCover(model);
         }
     }
 
-    private void loadRemoteCover() {
-        String imageUrl = mediaModel.getImageUrl();
+    // обложка уже извлечена индексом библиотеки — не нужно перечитывать теги
+    private boolean hasIndexedCover(MediaModel model) {
+        String imageUrl = model.getImageUrl();
+        if (imageUrl == null || !imageUrl.startsWith("file:")) return false;
+        try {
+            return java.nio.file.Paths.get(new java.net.URI(imageUrl)).toFile().exists();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void loadRemoteCover(MediaModel model) {
+        String imageUrl = model.getImageUrl();
         if (imageUrl == null || imageUrl.isEmpty()) {
-            Platform.runLater(this::setPlaceholderImage);
+            Platform.runLater(() -> showCoverFor(model, this::setPlaceholderImage));
             return;
         }
 
         Image cached = coverCache.get(imageUrl);
         if (cached != null) {
-            Platform.runLater(() -> {
+            Platform.runLater(() -> showCoverFor(model, () -> {
                 imageView.setImage(cached);
                 imageLoaded = true;
-            });
+            }));
+            return;
+        }
+
+        // локальные обложки (file:) читаются напрямую, удалённые — через общий HTTP-клиент
+        if (imageUrl.startsWith("file:")) {
+            Platform.runLater(() -> showCover(model, imageUrl, new Image(imageUrl, 150, 150, true, true, true)));
             return;
         }
 
-        Platform.runLater(() -> {
+        IMAGE_EXECUTOR.submit(() -> {
+            if (model != mediaModel) return;
             try {
-                Image img = new Image(imageUrl, 150, 150, true, true, true);
-                img.errorProperty().addListener((obs, oldV, newV) -> {
-                    if (newV) {
-                        System.err.println("Remote image load error for: " + imageUrl + " - " + Optional.ofNullable(img.getException()).map(Throwable::getMessage).orElse("unknown"));
-                        Platform.runLater(this::setPlaceholderImage);
-                    }
-                });
-                img.progressProperty().addListener((pObs, oldP, newP) -> {
-                    if (newP != null && newP.doubleValue() >= 1.0) {
-                        if (!img.isError()) {
-                            coverCache.put(imageUrl, img);
-                            imageView.setImage(img);
-                            imageLoaded = true;
-                        }
-                    }
-                });
-                if (!img.isError() && img.getProgress() >= 1.0) {
-                    coverCache.put(imageUrl, img);
-                    imageView.setImage(img);
-                    imageLoaded = true;
-                } else {
-                    if (imageView.getImage() == null || imageView.getImage().getWidth() <= 1) {
-                        setPlaceholderImage();
-                    }
-                }
+                byte[] bytes = HttpService.getBytes(imageUrl, COVER_TIMEOUT);
+                Image img = new Image(new ByteArrayInputStream(bytes), 150, 150, true, true);
+                Platform.runLater(() -> showCover(model, imageUrl, img));
             } catch (Exception ex) {
-                System.err.println("Exception creating Image for url: " + imageUrl + " : " + ex.getMessage());
-                ex.printStackTrace();
-                setPlaceholderImage();
+                System.err.println("Remote image load error for: " + imageUrl + " - " + ex.getMessage());
+                Platform.runLater(() -> showCoverFor(model, this::setPlaceholderImage));
             }
         });
     }
 
+    private void showCover(MediaModel model, String imageUrl, Image img) {
+        if (img.isError()) {
+            System.err.println("Image load error for: " + imageUrl + " - " + Optional.ofNullable(img.getException()).map(Throwable::getMessage).orElse("unknown"));
+            showCoverFor(model, this::setPlaceholderImage);
+            return;
+        }
+        Runnable apply = () -> {
+            coverCache.put(imageUrl, img);
+            showCoverFor(model, () -> {
+                imageView.setImage(img);
+                imageLoaded = true;
+            });
+        };
+        if (img.getProgress() >= 1.0) {
+            apply.run();
+            return;
+        }
+        img.progressProperty().addListener((pObs, oldP, newP) -> {
+            if (newP != null && newP.doubleValue() >= 1.0 && !img.isError()) apply.run();
+        });
+        img.errorProperty().addListener((obs, oldV, newV) -> {
+            if (newV) Platform.runLater(() -> showCoverFor(model, this::setPlaceholderImage));
+        });
+    }
+
     private String truncateText(String text, int maxLength) {
         if (text == null) return "";
         if (text.length() <= maxLength) return text;
@@ -417,7 +520,13 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
             }
         });
 
-        contextMenu.getItems().add(playItem);
+        MenuItem playNextItem = new MenuItem("Play next");
+        playNextItem.setStyle("-fx-text-fill: #D6D6E3; -fx-font-size: 14px;");
+        playNextItem.setOnAction(e -> {
+            if (playbackListener != null) playbackListener.onPlayNext(mediaModel);
+        });
+
+        contextMenu.getItems().addAll(playItem, playNextItem);
 
         if (isDownloaded) {
             MenuItem deleteItem = new MenuItem("Delete");
@@ -611,6 +720,32 @@ public class MediaWidget extends VBox implements CurrentTrackListener {
         return mediaModel;
     }
 
+    public int getIndex() {
+        return thisIndex;
+    }
+
+    // ячейка ушла с экрана: при прокрутке колесом mouse-exit не приходит, поэтому подгрузку под курсором снимаем здесь
+    void unbind() {
+        if (prefetch != null) {
+            prefetch.cancel();
+            prefetch = null;
+        }
+    }
+
+    // трек сдвинулся в том же списке (вставка или удаление перед ним) — перепривязка не нужна
+    void setIndex(int index) {
+        if (thisIndex >= 0) thisIndex = index;
+    }
+
+    /**
+     * Отмечает трек скачанным без пересоздания виджета (после завершения загрузки).
+     */
+    public void markDownloaded() {
+        isDownloaded = true;
+        mediaModel.setDownloaded(true);
+        updateDownloadedIndicator();
+    }
+
     private void updateDownloadedIndicator() {
         if (downloadedIndicatorLabel != null) {
             downloadedIndicatorLabel.setVisible(isDownloaded);
@@ -1,9 +1,16 @@
 package musicsearch.widgets;
 
+import java.io.File;
+
+import javafx.application.Platform;
 import javafx.geometry.Pos;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
+import javafx.stage.DirectoryChooser;
+import musicsearch.models.BulkDownloadReport;
+import musicsearch.service.LibraryIndex;
 import musicsearch.service.SearchEngine;
 
 
@@ -12,6 +19,7 @@ public class SearchWidget {
     private TextField searchField;
     private Button searchButton;
     private Button homeButton;
+    private Button downloadAllButton;
     private SearchEngine searchEngine;
     
     public SearchWidget(SearchEngine searchEngine){
@@ -32,7 +40,13 @@ public class SearchWidget {
             background() +
             "-fx-text-fill: #D6D6E3;"
         );
-        layout.getChildren().addAll(homeButton,searchField, searchButton);
+        downloadAllButton = new Button("⬇ Всё");
+        downloadAllButton.setStyle(
+            background() +
+            "-fx-text-fill: #D6D6E3;"
+        );
+        downloadAllButton.setOnAction(event -> downloadAll());
+        layout.getChildren().addAll(homeButton,searchField, searchButton, downloadAllButton);
 
         searchButton.setOnAction(event -> {
             String query = searchField.getText();
@@ -48,6 +62,37 @@ public class SearchWidget {
             "-fx-text-fill: #D6D6E3;"
         );
     }  
+    private void downloadAll() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Папка для загрузки");
+        if (LibraryIndex.MUSIC_DIR.isDirectory()) chooser.setInitialDirectory(LibraryIndex.MUSIC_DIR);
+        File dir = chooser.showDialog(layout.getScene() != null ? layout.getScene().getWindow() : null);
+        if (dir == null) return;
+
+        downloadAllButton.setDisable(true);
+        searchEngine.downloadAll(dir).whenComplete((report, error) -> Platform.runLater(() -> {
+            downloadAllButton.setDisable(false);
+            Alert alert = new Alert(error == null ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+            alert.setTitle("Загрузка всех треков");
+            alert.setHeaderText(null);
+            alert.setContentText(error == null ? formatReport(report) : "Не удалось получить список треков: " + error.getMessage());
+            if (layout.getScene() != null) alert.initOwner(layout.getScene().getWindow());
+            alert.show();
+        }));
+    }
+
+    private static String formatReport(BulkDownloadReport report) {
+        StringBuilder text = new StringBuilder()
+            .append("Скачано: ").append(report.getCompleted()).append(" из ").append(report.getRequested())
+            .append(", пропущено (уже есть): ").append(report.getSkipped()).append('\n')
+            .append(String.format("%.1f MB за %d с", report.getBytes() / (1024.0 * 1024.0), report.getElapsedMillis() / 1000));
+        if (!report.getFailed().isEmpty()) {
+            text.append("\nОшибки (").append(report.getFailed().size()).append("):");
+            for (String failure : report.getFailed()) text.append("\n").append(failure);
+        }
+        return text.toString();
+    }
+
     public HBox getWidget() {
         return layout;
     }
@@ -0,0 +1,58 @@
+package musicsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class HttpServiceTest {
+    // отдаёт два байта из обещанных десяти и замолкает, пока не отпустят release
+    private static HttpServer stalling(CountDownLatch release) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, 10);
+            OutputStream out = exchange.getResponseBody();
+            out.write("ok".getBytes());
+            out.flush();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    @Test void stalledBodyReadTimesOutAndReleasesHost() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = stalling(release);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        try {
+            int available = HttpService.availablePermits(url);
+            long started = System.nanoTime();
+            try (HttpService.StreamResponse response = HttpService.open(url, Duration.ofSeconds(1), Map.of())) {
+                assertEquals(available - 1, HttpService.availablePermits(url));
+                assertThrows(SocketTimeoutException.class, () -> response.body().readAllBytes());
+            }
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+            assertTrue(elapsedMs >= 1000 && elapsedMs < 5000);
+            assertEquals(available, HttpService.availablePermits(url));
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+}
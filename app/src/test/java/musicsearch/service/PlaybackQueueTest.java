@@ -0,0 +1,186 @@
+package musicsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import musicsearch.models.MediaModel;
+
+class PlaybackQueueTest {
+    private static List<MediaModel> tracks(int count) {
+        List<MediaModel> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) list.add(new MediaModel("Artist - Track " + i, "3:00", "http://x/" + i, null, false));
+        return list;
+    }
+
+    private static ObservableList<MediaModel> observableTracks(int count) {
+        ObservableList<MediaModel> list = FXCollections.observableArrayList();
+        list.addAll(tracks(count));
+        return list;
+    }
+
+    @Test void followsListWithoutCopying() {
+        List<MediaModel> list = tracks(3);
+        PlaybackQueue queue = new PlaybackQueue();
+        assertSame(list.get(1), queue.setSource(list, 1));
+        assertSame(list.get(2), queue.next());
+        assertNull(queue.peekNext());
+
+        MediaModel appended = new MediaModel("Artist - Late", "3:00", "http://x/late", null, false);
+        list.add(appended);
+        assertSame(appended, queue.next());
+        assertSame(list.get(2), queue.previous());
+    }
+
+    @Test void shufflePlaysEveryTrackOnceAndWalksBack() {
+        List<MediaModel> list = tracks(1000);
+        PlaybackQueue queue = new PlaybackQueue(new Random(42));
+        queue.setShuffle(true);
+        List<MediaModel> played = new ArrayList<>();
+        played.add(queue.setSource(list, 500));
+        for (MediaModel next = queue.next(); next != null; next = queue.next()) played.add(next);
+
+        assertEquals(1000, played.size());
+        assertEquals(1000, new HashSet<>(played).size());
+        assertSame(list.get(500), played.get(0));
+        assertSame(played.get(998), queue.previous());
+        assertSame(played.get(997), queue.previous());
+    }
+
+    @Test void repeatModes() {
+        List<MediaModel> list = tracks(2);
+        PlaybackQueue queue = new PlaybackQueue();
+        queue.setSource(list, 1);
+
+        queue.setRepeatMode(PlaybackQueue.RepeatMode.ONE);
+        assertSame(list.get(1), queue.peekNext());
+        assertSame(list.get(1), queue.advance());
+        assertNull(queue.next());
+
+        queue.setRepeatMode(PlaybackQueue.RepeatMode.ALL);
+        assertSame(list.get(0), queue.peekNext());
+        assertSame(list.get(0), queue.advance());
+        assertSame(list.get(1), queue.previous());
+    }
+
+    @Test void insertNextPlaysBeforeTheRestOfTheQueue() {
+        List<MediaModel> list = tracks(3);
+        PlaybackQueue queue = new PlaybackQueue();
+        queue.setSource(list, 0);
+        MediaModel extra = new MediaModel("Other - Song", "3:00", "http://y/1", null, false);
+        queue.insertNext(extra);
+
+        assertSame(extra, queue.peekNext());
+        assertSame(extra, queue.next());
+        assertSame(list.get(1), queue.next());
+        assertSame(list.get(0), queue.previous());
+    }
+
+    @Test void reselectingCurrentTrackKeepsQueue() {
+        List<MediaModel> list = tracks(50);
+        PlaybackQueue queue = new PlaybackQueue(new Random(3));
+        queue.setShuffle(true);
+        queue.setSource(list, 10);
+        MediaModel upcoming = queue.peekNext();
+        MediaModel extra = new MediaModel("Other - Song", "3:00", "http://y/1", null, false);
+        queue.insertNext(extra);
+
+        // клик по играющему треку (пауза) приходит как setSource того же списка
+        assertSame(list.get(10), queue.setSource(list, 10));
+        assertSame(extra, queue.next());
+        assertSame(upcoming, queue.next());
+
+        // другой трек того же списка — новая очередь
+        queue.insertNext(extra);
+        assertSame(list.get(20), queue.setSource(list, 20));
+        assertNotSame(extra, queue.next());
+    }
+
+    @Test void togglingShuffleKeepsCurrentTrack() {
+        List<MediaModel> list = tracks(100_000);
+        PlaybackQueue queue = new PlaybackQueue(new Random(7));
+        queue.setSource(list, 12_345);
+        queue.setShuffle(true);
+        assertEquals(12_345, queue.currentIndex());
+
+        Set<MediaModel> seen = new HashSet<>();
+        for (int i = 0; i < 50; i++) assertTrue(seen.add(queue.next()));
+        int index = queue.currentIndex();
+        queue.setShuffle(false);
+        assertSame(list.get(index + 1), queue.next());
+    }
+
+    @Test void deletingTrackAboveCurrentDoesNotSkip() {
+        ObservableList<MediaModel> list = observableTracks(5);
+        PlaybackQueue queue = new PlaybackQueue();
+        queue.setSource(list, 3);
+        list.remove(1);
+        assertSame(list.get(3), queue.next());
+        assertSame(list.get(2), queue.previous());
+
+        // удалён сам текущий трек: следующим идёт тот, что встал на его место
+        list.remove(2);
+        assertSame(list.get(2), queue.next());
+    }
+
+    @Test void deletingTracksInShuffleKeepsEveryRemainingTrackOnce() {
+        ObservableList<MediaModel> list = observableTracks(50);
+        PlaybackQueue queue = new PlaybackQueue(new Random(3));
+        queue.setShuffle(true);
+        List<MediaModel> played = new ArrayList<>();
+        played.add(queue.setSource(list, 10));
+        for (int i = 0; i < 9; i++) played.add(queue.next());
+
+        MediaModel playedEarlier = played.get(4);
+        list.remove(playedEarlier);
+        list.remove(0);
+        list.remove(list.size() - 1);
+        played.remove(playedEarlier);
+        assertSame(played.get(played.size() - 2), queue.previous());
+        assertSame(played.get(played.size() - 1), queue.next());
+
+        Set<MediaModel> rest = new HashSet<>(played);
+        for (MediaModel next = queue.next(); next != null; next = queue.next()) assertTrue(rest.add(next));
+        assertTrue(rest.containsAll(list));
+    }
+
+    @Test void shuffleWithRepeatAllReshufflesEveryRound() {
+        List<MediaModel> list = tracks(20);
+        PlaybackQueue queue = new PlaybackQueue(new Random(11));
+        queue.setShuffle(true);
+        queue.setRepeatMode(PlaybackQueue.RepeatMode.ALL);
+        List<MediaModel> first = new ArrayList<>();
+        first.add(queue.setSource(list, 0));
+        for (int i = 1; i < 20; i++) first.add(queue.next());
+        MediaModel last = first.get(19);
+
+        MediaModel peeked = queue.peekNext();
+        assertNotNull(peeked);
+        assertNotEquals(last, peeked);
+        assertSame(peeked, queue.next());
+        assertSame(last, queue.previous());
+        assertSame(peeked, queue.next());
+
+        List<MediaModel> second = new ArrayList<>();
+        second.add(peeked);
+        for (int i = 1; i < 19; i++) second.add(queue.next());
+        assertEquals(19, new HashSet<>(second).size());
+        assertFalse(second.contains(last));
+        assertNotEquals(first.subList(0, 19), second);
+    }
+}
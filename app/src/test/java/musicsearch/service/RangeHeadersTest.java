@@ -0,0 +1,55 @@
+package musicsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class RangeHeadersTest {
+    private static final long TOTAL = 1000;
+
+    @Test void contentRangeGivesStartAndTotal() {
+        assertArrayEquals(new long[]{100, 1000}, DownloadManager.parseContentRange("bytes 100-199/1000"));
+        assertArrayEquals(new long[]{0, 1000}, DownloadManager.parseContentRange("bytes 0 - 999 / 1000"));
+    }
+
+    @Test void contentRangeWithUnknownTotalOrUnsatisfiedRange() {
+        assertArrayEquals(new long[]{0, -1}, DownloadManager.parseContentRange("bytes 0-99/*"));
+        assertArrayEquals(new long[]{-1, 1000}, DownloadManager.parseContentRange("bytes */1000"));
+    }
+
+    @Test void malformedContentRangeGivesNothing() {
+        assertArrayEquals(new long[]{-1, -1}, DownloadManager.parseContentRange(null));
+        assertArrayEquals(new long[]{-1, -1}, DownloadManager.parseContentRange("items 0-1/2"));
+        assertArrayEquals(new long[]{-1, -1}, DownloadManager.parseContentRange("bytes abc-def/xyz"));
+        assertArrayEquals(new long[]{-1, -1}, DownloadManager.parseContentRange("bytes 5-9/abc"));
+    }
+
+    @Test void rangeWithoutHeaderIsWholeFile() {
+        assertArrayEquals(new long[]{0, 999}, StreamProxy.parseRange(null, TOTAL));
+    }
+
+    @Test void openAndClosedRanges() {
+        assertArrayEquals(new long[]{100, 999}, StreamProxy.parseRange("bytes=100-", TOTAL));
+        assertArrayEquals(new long[]{100, 199}, StreamProxy.parseRange("bytes=100-199", TOTAL));
+        assertArrayEquals(new long[]{900, 999}, StreamProxy.parseRange("bytes=900-5000", TOTAL));
+    }
+
+    @Test void suffixRanges() {
+        assertArrayEquals(new long[]{900, 999}, StreamProxy.parseRange("bytes=-100", TOTAL));
+        assertArrayEquals(new long[]{0, 999}, StreamProxy.parseRange("bytes=-5000", TOTAL));
+        assertNull(StreamProxy.parseRange("bytes=-0", TOTAL));
+    }
+
+    @Test void unsatisfiableRangesAreRejected() {
+        assertNull(StreamProxy.parseRange("bytes=1000-", TOTAL));
+        assertNull(StreamProxy.parseRange("bytes=200-100", TOTAL));
+    }
+
+    @Test void malformedOrMultipleRangesFallBackToWholeFile() {
+        assertArrayEquals(new long[]{0, 999}, StreamProxy.parseRange("bytes=0-1,5-9", TOTAL));
+        assertArrayEquals(new long[]{0, 999}, StreamProxy.parseRange("bytes=abc-", TOTAL));
+        assertArrayEquals(new long[]{0, 999}, StreamProxy.parseRange("bytes=5", TOTAL));
+        assertArrayEquals(new long[]{0, 999}, StreamProxy.parseRange("items=0-1", TOTAL));
+    }
+}
@@ -0,0 +1,135 @@
+package musicsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class RequestSchedulerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    // отвечает кодами statuses по очереди, дальше — 200; на 503 добавляет Retry-After: 1
+    private static HttpServer serve(int... statuses) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        AtomicInteger calls = new AtomicInteger();
+        server.createContext("/", exchange -> {
+            int call = calls.getAndIncrement();
+            int status = call < statuses.length ? statuses[call] : 200;
+            if (status == 503) exchange.getResponseHeaders().set("Retry-After", "1");
+            exchange.sendResponseHeaders(status, 2);
+            exchange.getResponseBody().write("ok".getBytes());
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    private static RequestScheduler scheduler(int maxConcurrency, int retries, int maxQueue) {
+        return new RequestScheduler(100, 10, maxConcurrency, 1500, retries, maxQueue);
+    }
+
+    private static void get(RequestScheduler scheduler, String url) throws IOException {
+        scheduler.open(url, TIMEOUT, Map.of(), () -> false).close();
+    }
+
+    @Test void throttlingHalvesLimitAndWaitsForRetryAfter() throws Exception {
+        HttpServer server = serve(503);
+        try {
+            RequestScheduler scheduler = scheduler(8, 1, 4);
+            long started = System.nanoTime();
+            get(scheduler, url(server));
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+            assertTrue(elapsedMs >= 1000);
+            assertEquals(1, scheduler.getStats().getThrottled());
+            assertEquals(1, scheduler.getStats().getRetried());
+            // 8 / 2 = 4, затем быстрый ответ: 4 + 1/4
+            assertEquals(4, scheduler.getStats().getConcurrencyLimit());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test void fastResponsesGrowLimitUpToMaximum() throws Exception {
+        HttpServer server = serve(429);
+        try {
+            RequestScheduler scheduler = scheduler(8, 0, 4);
+            assertThrows(HttpService.HttpStatusException.class, () -> get(scheduler, url(server)));
+            assertEquals(4, scheduler.getStats().getConcurrencyLimit());
+
+            // +1/limit за ответ: 4.25, 4.49, 4.71, 4.92, 5.12
+            for (int i = 0; i < 4; i++) get(scheduler, url(server));
+            assertEquals(4, scheduler.getStats().getConcurrencyLimit());
+            get(scheduler, url(server));
+            assertEquals(5, scheduler.getStats().getConcurrencyLimit());
+
+            for (int i = 0; i < 50; i++) get(scheduler, url(server));
+            assertEquals(8, scheduler.getStats().getConcurrencyLimit());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test void nonRetryableStatusFailsAtOnceAndShrinksLimit() throws Exception {
+        HttpServer server = serve(404);
+        try {
+            RequestScheduler scheduler = scheduler(8, 2, 4);
+            HttpService.HttpStatusException e = assertThrows(HttpService.HttpStatusException.class,
+                    () -> get(scheduler, url(server)));
+            assertEquals(404, e.getStatusCode());
+            assertEquals(0, scheduler.getStats().getRetried());
+            assertEquals(6, scheduler.getStats().getConcurrencyLimit());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test void fullQueueShedsAndCancelledWaitersLeave() throws Exception {
+        HttpServer server = serve();
+        try {
+            RequestScheduler scheduler = scheduler(1, 0, 1);
+            HttpService.StreamResponse held = scheduler.open(url(server), TIMEOUT, Map.of(), () -> false);
+
+            AtomicBoolean cancelled = new AtomicBoolean(false);
+            AtomicReference<Throwable> waiterResult = new AtomicReference<>();
+            Thread waiter = new Thread(() -> {
+                try {
+                    scheduler.open(url(server), TIMEOUT, Map.of(), cancelled::get).close();
+                } catch (Throwable t) {
+                    waiterResult.set(t);
+                }
+            });
+            waiter.start();
+            while (scheduler.getStats().getQueued() == 0) Thread.sleep(5);
+
+            assertThrows(RequestScheduler.RejectedRequestException.class, () -> get(scheduler, url(server)));
+            cancelled.set(true);
+            waiter.join(5000);
+            assertTrue(waiterResult.get() instanceof CancellationException);
+            assertEquals(2, scheduler.getStats().getShed());
+
+            held.close();
+            assertEquals(0, scheduler.getStats().getInFlight());
+            get(scheduler, url(server));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
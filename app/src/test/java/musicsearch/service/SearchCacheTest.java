@@ -0,0 +1,80 @@
+package musicsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import musicsearch.models.MediaModel;
+import musicsearch.models.SearchPage;
+
+class SearchCacheTest {
+    private static final long HOUR_MS = 3_600_000;
+
+    private static SearchPage page(String title) {
+        return new SearchPage(List.of(new MediaModel("Artist - " + title, "3:00", "http://x/" + title, null, false)), 1);
+    }
+
+    private static long files(Path dir) throws IOException {
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.count();
+        }
+    }
+
+    private static void age(Path dir, long ageMs) throws IOException {
+        try (Stream<Path> entries = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) entries::iterator) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - ageMs));
+            }
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> entries = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) entries.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @Test void diskKeepsOnlyNewestPages() throws Exception {
+        Path dir = Files.createTempDirectory("search-cache");
+        try {
+            SearchCache cache = new SearchCache(HOUR_MS, 2, true, dir);
+            cache.put("first", 0, page("a"));
+            age(dir, 2000);
+            cache.put("second", 0, page("b"));
+            cache.put("third", 0, page("c"));
+            assertEquals(2, files(dir));
+
+            // новый экземпляр — память пуста, читается только диск
+            SearchCache restarted = new SearchCache(HOUR_MS, 2, true, dir);
+            assertNull(restarted.get("first", 0));
+            assertNotNull(restarted.get("second", 0));
+            assertNotNull(restarted.get("third", 0));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test void expiredPageIsDeletedWhenRead() throws Exception {
+        Path dir = Files.createTempDirectory("search-cache");
+        try {
+            new SearchCache(HOUR_MS, 10, true, dir).put("query", 0, page("a"));
+            assertEquals(1, files(dir));
+            Thread.sleep(20);
+
+            assertNull(new SearchCache(10, 10, true, dir).get("query", 0));
+            assertEquals(0, files(dir));
+        } finally {
+            delete(dir);
+        }
+    }
+}
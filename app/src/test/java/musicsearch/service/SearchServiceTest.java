@@ -0,0 +1,21 @@
+package musicsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+
+class SearchServiceTest {
+    @Test void encodesQueryInSearchUrl() {
+        String url = SearchService.searchUrl("example.org", "daft punk", 0);
+        assertEquals("https://example.org/search?q=daft+punk", url);
+        assertEquals("daft punk", URI.create(url).getQuery().substring(2).replace('+', ' '));
+    }
+
+    @Test void encodesReservedCharactersOnLaterPages() {
+        String url = SearchService.searchUrl("example.org", "AC|DC #1 100% \"live\"", 48);
+        assertEquals("https://example.org/search/start/48?q=AC%7CDC+%231+100%25+%22live%22", url);
+        assertEquals("example.org", URI.create(url).getHost());
+    }
+}
@@ -0,0 +1,28 @@
+package musicsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class TrackKeyTest {
+    @Test void ignoresCaseAndWhitespace() {
+        assertEquals(TrackKey.of("Daft Punk", "One More Time"), TrackKey.of("  daft   PUNK ", "one more\ttime"));
+    }
+
+    @Test void stripsFeaturedArtists() {
+        String key = TrackKey.of("Eminem", "Love The Way You Lie");
+        assertEquals(key, TrackKey.of("Eminem feat. Rihanna", "Love The Way You Lie"));
+        assertEquals(key, TrackKey.of("Eminem", "Love The Way You Lie (ft. Rihanna)"));
+        assertEquals(key, TrackKey.of("Eminem", "Love The Way You Lie [Featuring Rihanna]"));
+        assertEquals(key, TrackKey.of("Eminem feat Rihanna", "Love The Way You Lie"));
+        assertEquals(key, TrackKey.of("Eminem ft Rihanna", "Love The Way You Lie"));
+        assertEquals(key, TrackKey.of("Eminem", "Love The Way You Lie ft Rihanna"));
+    }
+
+    @Test void keepsWordsThatOnlyContainFeat() {
+        assertEquals("daft punk", TrackKey.normalize("Daft Punk"));
+        assertEquals("feat of strength", TrackKey.normalize("Feat of Strength"));
+        assertNotEquals(TrackKey.of("Left", "Behind"), TrackKey.of("Le", "Behind"));
+    }
+}